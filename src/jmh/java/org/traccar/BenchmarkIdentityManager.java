@@ -0,0 +1,86 @@
+package org.traccar;
+
+import org.traccar.database.IdentityManager;
+import org.traccar.model.Device;
+import org.traccar.model.Position;
+
+/**
+ * Plain identity manager for benchmarks with a single device. Attribute lookups return default values, so there are
+ * no mock invocations or allocations on the measured path.
+ */
+public class BenchmarkIdentityManager implements IdentityManager {
+
+    private final Device device;
+    private Position lastPosition;
+
+    public BenchmarkIdentityManager() {
+        device = new Device();
+        device.setId(1);
+        device.setUniqueId("123456789012345");
+    }
+
+    public void setLastPosition(Position lastPosition) {
+        this.lastPosition = lastPosition;
+    }
+
+    @Override
+    public Device addUnknownDevice(String uniqueId) {
+        return null;
+    }
+
+    @Override
+    public Device getById(long id) {
+        return device;
+    }
+
+    @Override
+    public Device getByUniqueId(String uniqueId) {
+        return device;
+    }
+
+    @Override
+    public String getDevicePassword(long id, String protocol, String defaultPassword) {
+        return defaultPassword;
+    }
+
+    @Override
+    public Position getLastPosition(long deviceId) {
+        return lastPosition;
+    }
+
+    @Override
+    public boolean isLatestPosition(Position position) {
+        return true;
+    }
+
+    @Override
+    public boolean lookupAttributeBoolean(
+            long deviceId, String attributeName, boolean defaultValue, boolean lookupServer, boolean lookupConfig) {
+        return defaultValue;
+    }
+
+    @Override
+    public String lookupAttributeString(
+            long deviceId, String attributeName, String defaultValue, boolean lookupServer, boolean lookupConfig) {
+        return defaultValue;
+    }
+
+    @Override
+    public int lookupAttributeInteger(
+            long deviceId, String attributeName, int defaultValue, boolean lookupServer, boolean lookupConfig) {
+        return defaultValue;
+    }
+
+    @Override
+    public long lookupAttributeLong(
+            long deviceId, String attributeName, long defaultValue, boolean lookupServer, boolean lookupConfig) {
+        return defaultValue;
+    }
+
+    @Override
+    public double lookupAttributeDouble(
+            long deviceId, String attributeName, double defaultValue, boolean lookupServer, boolean lookupConfig) {
+        return defaultValue;
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.traccar.geofence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeofenceBenchmark {
+
+    @Param({"4", "64", "1024"})
+    private int vertices;
+
+    private GeofencePolygon polygon;
+
+    @Setup
+    public void setup() throws Exception {
+        StringBuilder wkt = new StringBuilder("POLYGON ((");
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            double radius = i % 2 == 0 ? 0.1 : 0.08;
+            wkt.append(55.75 + radius * Math.cos(angle)).append(' ');
+            wkt.append(37.62 + radius * Math.sin(angle)).append(", ");
+        }
+        wkt.setLength(wkt.length() - 2);
+        wkt.append("))");
+        polygon = new GeofencePolygon(wkt.toString());
+    }
+
+    @Benchmark
+    public boolean containsPointInside() {
+        return polygon.containsPoint(55.75, 37.62);
+    }
+
+    @Benchmark
+    public boolean containsPointOutside() {
+        return polygon.containsPoint(56.75, 38.62);
+    }
+
+}
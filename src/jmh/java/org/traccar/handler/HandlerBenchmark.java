@@ -0,0 +1,119 @@
+package org.traccar.handler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.traccar.BenchmarkIdentityManager;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Attribute;
+import org.traccar.model.BaseModel;
+import org.traccar.model.Position;
+import org.traccar.session.cache.CacheManager;
+import org.traccar.storage.StorageException;
+import org.traccar.storage.TestStorage;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerBenchmark {
+
+    private FilterHandler filterHandler;
+    private DistanceHandler distanceHandler;
+    private ComputedAttributesHandler computedAttributesHandler;
+
+    private Position position;
+
+    private Position createPosition(Date time, double latitude, double longitude) {
+        Position position = new Position("test");
+        position.setDeviceId(1);
+        position.setTime(time);
+        position.setValid(true);
+        position.setLatitude(latitude);
+        position.setLongitude(longitude);
+        position.setSpeed(20);
+        position.setCourse(90);
+        position.set(Position.KEY_IGNITION, true);
+        position.set(Position.KEY_POWER, 12.5);
+        position.set("adc1", 128);
+        return position;
+    }
+
+    @Setup
+    public void setup() throws StorageException {
+
+        long time = System.currentTimeMillis();
+        Position last = createPosition(new Date(time - 60000), 10.0, 10.0);
+        last.set(Position.KEY_TOTAL_DISTANCE, 1000.0);
+        position = createPosition(new Date(time), 10.01, 10.01);
+
+        var identityManager = new BenchmarkIdentityManager();
+        identityManager.setLastPosition(last);
+
+        var config = new Config();
+        config.setString(Keys.FILTER_ENABLE, "true");
+        config.setString(Keys.FILTER_INVALID, "true");
+        config.setString(Keys.FILTER_ZERO, "true");
+        config.setString(Keys.FILTER_DUPLICATE, "true");
+        config.setString(Keys.FILTER_FUTURE, "300");
+        config.setString(Keys.FILTER_MAX_SPEED, "500");
+        filterHandler = new FilterHandler(config, identityManager, null);
+
+        distanceHandler = new DistanceHandler(new Config(), identityManager);
+
+        List<Attribute> attributes = new ArrayList<>();
+        String[][] definitions = {
+                {"adcVoltage", "adc1 * 0.01", "number"},
+                {"moving", "speed > 5 && ignition", "boolean"},
+                {"powerState", "power > 11.5 ? \"normal\" : \"low\"", "string"},
+        };
+        for (String[] definition : definitions) {
+            Attribute attribute = new Attribute();
+            attribute.setAttribute(definition[0]);
+            attribute.setExpression(definition[1]);
+            attribute.setType(definition[2]);
+            attributes.add(attribute);
+        }
+        var cacheManager = new CacheManager(new TestStorage()) {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T extends BaseModel> List<T> getDeviceObjects(long deviceId, Class<T> clazz) {
+                return (List<T>) attributes;
+            }
+        };
+        computedAttributesHandler = new ComputedAttributesHandler(new Config(), identityManager, cacheManager);
+
+    }
+
+    @Benchmark
+    public Position filter() {
+        return filterHandler.handlePosition(position);
+    }
+
+    @Benchmark
+    public Position distance() {
+        position.getAttributes().remove(Position.KEY_DISTANCE);
+        return distanceHandler.handlePosition(position);
+    }
+
+    @Benchmark
+    public Position computedAttributes() {
+        return computedAttributesHandler.handlePosition(position);
+    }
+
+}
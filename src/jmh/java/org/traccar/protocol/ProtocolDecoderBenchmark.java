@@ -0,0 +1,97 @@
+package org.traccar.protocol;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.traccar.BaseProtocolDecoder;
+import org.traccar.BenchmarkIdentityManager;
+import org.traccar.Protocol;
+import org.traccar.ProtocolTest;
+import org.traccar.config.Config;
+import org.traccar.session.ConnectionManager;
+import org.traccar.session.DeviceSession;
+
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtocolDecoderBenchmark extends ProtocolTest {
+
+    private Gt06ProtocolDecoder gt06Decoder;
+    private ByteBuf gt06Message;
+
+    private TeltonikaProtocolDecoder teltonikaDecoder;
+    private ByteBuf teltonikaMessage;
+
+    private Gl200TextProtocolDecoder gl200Decoder;
+    private ByteBuf gl200Message;
+
+    /**
+     * Inject plain stubs instead of the mocks used by protocol tests, so only decoding is measured.
+     */
+    private <T extends BaseProtocolDecoder> T injectStubs(T decoder) {
+        var config = new Config();
+        decoder.setConfig(config);
+        decoder.setIdentityManager(new BenchmarkIdentityManager());
+        var deviceSession = new DeviceSession(1L, "", null, null, null);
+        decoder.setConnectionManager(new ConnectionManager(config, null, null, null) {
+            @Override
+            public DeviceSession getDeviceSession(
+                    Protocol protocol, Channel channel, SocketAddress remoteAddress, String... uniqueIds) {
+                return deviceSession;
+            }
+        });
+        return decoder;
+    }
+
+    @Setup
+    public void setup() throws Exception {
+
+        gt06Decoder = injectStubs(new Gt06ProtocolDecoder(null));
+        gt06Decoder.decode(null, null, binary(
+                "78780D01086471700328358100093F040D0A"));
+        gt06Message = binary(
+                "78781f120f0a140e150bc505e51e780293a9e800540000f601006e0055da00035f240d0a");
+
+        teltonikaDecoder = injectStubs(new TeltonikaProtocolDecoder(null, false));
+        teltonikaDecoder.decode(null, null, binary(
+                "000F313233343536373839303132333435"));
+        teltonikaMessage = binary(
+                "00000000000000da08030000017fcedf499600280431be0eded45d0038012d100000fa100901000200b300b4004501500415034702fa00054232a1180000cd3b2fce281d43001f02c700000006f10000a029000000017fcedea99600280432070eded3dd00380046130009000f0801010200b300b400450150051502470205423276180009cd3b2fce281d43001f02c700000027f10000a0290000000179d50853180027f65d3f0ed67212001500f1110061000f0801010200b300b4004501500515034702054234f4180061cd53d1ce28c043003e02c700000147f1000000290003000052cb");
+
+        gl200Decoder = injectStubs(new Gl200TextProtocolDecoder(null));
+        gl200Message = buffer(
+                "+RESP:GTFRI,5E0100,861971050039361,,,,10,1,1,10.4,140,196.9,-80.709946,35.016525,20220302220944,0310,0260,1CE9,52A1,00,0.0,,,,,420000,,,,20220302220948,1B0B$");
+
+    }
+
+    @Benchmark
+    public Object gt06() throws Exception {
+        return gt06Decoder.decode(null, null, gt06Message.duplicate());
+    }
+
+    @Benchmark
+    public Object teltonika() throws Exception {
+        return teltonikaDecoder.decode(null, null, teltonikaMessage.duplicate());
+    }
+
+    @Benchmark
+    public Object gl200Text() throws Exception {
+        return gl200Decoder.decode(null, null, gl200Message.duplicate());
+    }
+
+}
@@ -22,9 +22,11 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOutboundHandler;
 import io.netty.channel.ChannelPipeline;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.EventExecutorGroup;
 import org.traccar.config.Keys;
 import org.traccar.handler.ComputedAttributesHandler;
 import org.traccar.handler.CopyAttributesHandler;
+import org.traccar.handler.DailySummaryHandler;
 import org.traccar.handler.DefaultDataHandler;
 import org.traccar.handler.DistanceHandler;
 import org.traccar.handler.EngineHoursHandler;
@@ -33,6 +35,7 @@ import org.traccar.handler.GeocoderHandler;
 import org.traccar.handler.GeolocationHandler;
 import org.traccar.handler.HemisphereHandler;
 import org.traccar.handler.MotionHandler;
+import org.traccar.handler.MotionSegmentHandler;
 import org.traccar.handler.NetworkMessageHandler;
 import org.traccar.handler.OpenChannelHandler;
 import org.traccar.handler.RemoteAddressHandler;
@@ -49,6 +52,8 @@ import org.traccar.handler.events.IgnitionEventHandler;
 import org.traccar.handler.events.MaintenanceEventHandler;
 import org.traccar.handler.events.MotionEventHandler;
 import org.traccar.handler.events.OverspeedEventHandler;
+import org.traccar.metrics.MetricsHandler;
+import org.traccar.metrics.MetricsManager;
 
 import java.util.Map;
 
@@ -57,6 +62,9 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
     private final TrackerConnector connector;
     private final String protocol;
     private int timeout;
+    private final EventExecutorGroup processingGroup;
+    private final String offloadHandler;
+    private final boolean metrics;
 
     public BasePipelineFactory(TrackerConnector connector, String protocol) {
         this.connector = connector;
@@ -65,6 +73,9 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
         if (timeout == 0) {
             timeout = Context.getConfig().getInteger(Keys.SERVER_TIMEOUT);
         }
+        processingGroup = EventLoopGroupFactory.getProcessingGroup();
+        offloadHandler = Context.getConfig().getString(Keys.PROCESSING_OFFLOAD_HANDLER);
+        metrics = Context.getConfig().getBoolean(Keys.PROCESSING_METRICS_ENABLE);
     }
 
     protected abstract void addTransportHandlers(PipelineBuilder pipeline);
@@ -73,9 +84,18 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
 
     @SafeVarargs
     private void addHandlers(ChannelPipeline pipeline, Class<? extends ChannelHandler>... handlerClasses) {
+        EventExecutorGroup group = null;
         for (Class<? extends ChannelHandler> handlerClass : handlerClasses) {
             if (handlerClass != null) {
-                pipeline.addLast(Main.getInjector().getInstance(handlerClass));
+                if (processingGroup != null && handlerClass.getSimpleName().equals(offloadHandler)) {
+                    group = processingGroup;
+                }
+                ChannelHandler handler = Main.getInjector().getInstance(handlerClass);
+                if (metrics && handler instanceof ChannelInboundHandler) {
+                    handler = new MetricsHandler((ChannelInboundHandler) handler, Main.getInjector()
+                            .getInstance(MetricsManager.class).getHandlerLatency(handlerClass.getSimpleName()));
+                }
+                pipeline.addLast(group, handler);
             }
         }
     }
@@ -137,6 +157,8 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
                 ComputedAttributesHandler.class,
                 WebDataHandler.class,
                 DefaultDataHandler.class,
+                MotionSegmentHandler.class,
+                DailySummaryHandler.class,
                 CommandResultEventHandler.class,
                 OverspeedEventHandler.class,
                 BehaviorEventHandler.class,
@@ -24,6 +24,7 @@ import org.traccar.database.IdentityManager;
 import org.traccar.database.MediaManager;
 import org.traccar.database.StatisticsManager;
 import org.traccar.helper.UnitsConverter;
+import org.traccar.metrics.MetricsManager;
 import org.traccar.model.Command;
 import org.traccar.model.Device;
 import org.traccar.model.Position;
@@ -50,6 +51,7 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
     private IdentityManager identityManager;
     private ConnectionManager connectionManager;
     private StatisticsManager statisticsManager;
+    private MetricsManager metricsManager;
     private MediaManager mediaManager;
     private CommandsManager commandsManager;
 
@@ -92,6 +94,11 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
         this.statisticsManager = statisticsManager;
     }
 
+    @Inject
+    public void setMetricsManager(MetricsManager metricsManager) {
+        this.metricsManager = metricsManager;
+    }
+
     @Inject
     public void setMediaManager(MediaManager mediaManager) {
         this.mediaManager = mediaManager;
@@ -190,6 +197,9 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
         if (statisticsManager != null) {
             statisticsManager.registerMessageReceived();
         }
+        if (metricsManager != null) {
+            metricsManager.registerMessageDecoded(getProtocolName());
+        }
         Set<Long> deviceIds = new HashSet<>();
         if (decodedMessage != null) {
             if (decodedMessage instanceof Position) {
@@ -21,6 +21,7 @@ import com.google.inject.servlet.ServletModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.broadcast.BroadcastService;
+import org.traccar.database.PositionWriter;
 import org.traccar.schedule.ScheduleManager;
 import org.traccar.web.WebServer;
 
@@ -121,7 +122,8 @@ public final class Main {
             LOGGER.info("Starting server...");
 
             var services = Stream.of(
-                    ServerManager.class, WebServer.class, ScheduleManager.class, BroadcastService.class)
+                    PositionWriter.class, ServerManager.class, WebServer.class, ScheduleManager.class,
+                    BroadcastService.class)
                     .map(injector::getInstance)
                     .filter(Objects::nonNull)
                     .collect(Collectors.toList());
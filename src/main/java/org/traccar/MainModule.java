@@ -64,9 +64,13 @@ import org.traccar.geolocation.GoogleGeolocationProvider;
 import org.traccar.geolocation.MozillaGeolocationProvider;
 import org.traccar.geolocation.OpenCellIdGeolocationProvider;
 import org.traccar.geolocation.UnwiredGeolocationProvider;
+import org.traccar.handler.DailySummaryHandler;
 import org.traccar.handler.GeocoderHandler;
 import org.traccar.handler.GeolocationHandler;
+import org.traccar.handler.MotionSegmentHandler;
 import org.traccar.handler.SpeedLimitHandler;
+import org.traccar.reports.common.DailySummaryManager;
+import org.traccar.reports.common.MotionSegmentManager;
 import org.traccar.session.cache.CacheManager;
 import org.traccar.sms.HttpSmsClient;
 import org.traccar.sms.SmsManager;
@@ -294,6 +298,22 @@ public class MainModule extends AbstractModule {
         return null;
     }
 
+    @Provides
+    public static MotionSegmentHandler provideMotionSegmentHandler(MotionSegmentManager motionSegmentManager) {
+        if (motionSegmentManager.isEnabled()) {
+            return new MotionSegmentHandler(motionSegmentManager);
+        }
+        return null;
+    }
+
+    @Provides
+    public static DailySummaryHandler provideDailySummaryHandler(DailySummaryManager dailySummaryManager) {
+        if (dailySummaryManager.isEnabled()) {
+            return new DailySummaryHandler(dailySummaryManager);
+        }
+        return null;
+    }
+
     @Provides
     public static BroadcastService provideBroadcastService(
             Config config, ObjectMapper objectMapper) throws IOException {
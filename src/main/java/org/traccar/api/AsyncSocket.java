@@ -16,23 +16,28 @@
 package org.traccar.api;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.util.Timer;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.Context;
 import org.traccar.session.ConnectionManager;
+import org.traccar.session.cache.PayloadCache;
 import org.traccar.model.Device;
 import org.traccar.model.Event;
 import org.traccar.model.Position;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
-public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.UpdateListener {
+public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.UpdateListener, WriteCallback {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AsyncSocket.class);
 
@@ -40,11 +45,24 @@ public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.U
     private static final String KEY_POSITIONS = "positions";
     private static final String KEY_EVENTS = "events";
 
-    private final ObjectMapper objectMapper;
+    private static final int MAX_PENDING_EVENTS = 100;
+
+    private final PayloadCache payloadCache;
+    private final Timer timer;
+    private final long interval;
     private final long userId;
 
-    public AsyncSocket(ObjectMapper objectMapper, long userId) {
-        this.objectMapper = objectMapper;
+    private final Map<Long, Device> pendingDevices = new LinkedHashMap<>();
+    private final Map<Long, Position> pendingPositions = new LinkedHashMap<>();
+    private final Deque<Event> pendingEvents = new ArrayDeque<>();
+    private boolean pendingKeepalive;
+    private boolean sending;
+    private boolean scheduled;
+
+    public AsyncSocket(PayloadCache payloadCache, Timer timer, long interval, long userId) {
+        this.payloadCache = payloadCache;
+        this.timer = timer;
+        this.interval = interval;
         this.userId = userId;
     }
 
@@ -52,9 +70,12 @@ public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.U
     public void onWebSocketConnect(Session session) {
         super.onWebSocketConnect(session);
 
-        Map<String, Collection<?>> data = new HashMap<>();
-        data.put(KEY_POSITIONS, Context.getDeviceManager().getInitialState(userId));
-        sendData(data);
+        synchronized (this) {
+            for (Position position : Context.getDeviceManager().getInitialState(userId)) {
+                pendingPositions.put(position.getDeviceId(), position);
+            }
+        }
+        sendPending();
 
         Context.getConnectionManager().addListener(userId, this);
     }
@@ -68,37 +89,133 @@ public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.U
 
     @Override
     public void onKeepalive() {
-        sendData(new HashMap<>());
+        synchronized (this) {
+            pendingKeepalive = true;
+        }
+        schedulePending();
     }
 
     @Override
     public void onUpdateDevice(Device device) {
-        Map<String, Collection<?>> data = new HashMap<>();
-        data.put(KEY_DEVICES, Collections.singletonList(device));
-        sendData(data);
+        synchronized (this) {
+            pendingDevices.put(device.getId(), device);
+        }
+        schedulePending();
     }
 
     @Override
     public void onUpdatePosition(Position position) {
-        Map<String, Collection<?>> data = new HashMap<>();
-        data.put(KEY_POSITIONS, Collections.singletonList(position));
-        sendData(data);
+        synchronized (this) {
+            pendingPositions.put(position.getDeviceId(), position);
+        }
+        schedulePending();
     }
 
     @Override
     public void onUpdateEvent(Event event) {
-        Map<String, Collection<?>> data = new HashMap<>();
-        data.put(KEY_EVENTS, Collections.singletonList(event));
-        sendData(data);
+        synchronized (this) {
+            if (pendingEvents.size() >= MAX_PENDING_EVENTS) {
+                pendingEvents.removeFirst();
+            }
+            pendingEvents.addLast(event);
+        }
+        schedulePending();
+    }
+
+    @Override
+    public void writeSuccess() {
+        synchronized (this) {
+            sending = false;
+            if (scheduled) {
+                return;
+            }
+        }
+        sendPending();
+    }
+
+    @Override
+    public void writeFailed(Throwable error) {
+        LOGGER.warn("Socket send error", error);
+        writeSuccess();
+    }
+
+    private void schedulePending() {
+        if (interval > 0) {
+            synchronized (this) {
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            timer.newTimeout(timeout -> {
+                synchronized (this) {
+                    scheduled = false;
+                }
+                sendPending();
+            }, interval, TimeUnit.MILLISECONDS);
+        } else {
+            sendPending();
+        }
     }
 
-    private void sendData(Map<String, Collection<?>> data) {
-        if (isConnected()) {
-            try {
-                getRemote().sendString(objectMapper.writeValueAsString(data), null);
-            } catch (JsonProcessingException e) {
-                LOGGER.warn("Socket JSON formatting error", e);
+    private void sendPending() {
+        Map<String, Collection<?>> data = new LinkedHashMap<>();
+        synchronized (this) {
+            if (sending) {
+                return;
+            }
+            if (!isConnected()) {
+                clearPending();
+                return;
+            }
+            if (!pendingDevices.isEmpty()) {
+                data.put(KEY_DEVICES, new ArrayList<>(pendingDevices.values()));
             }
+            if (!pendingPositions.isEmpty()) {
+                data.put(KEY_POSITIONS, new ArrayList<>(pendingPositions.values()));
+            }
+            if (!pendingEvents.isEmpty()) {
+                data.put(KEY_EVENTS, new ArrayList<>(pendingEvents));
+            }
+            if (data.isEmpty() && !pendingKeepalive) {
+                return;
+            }
+            clearPending();
+            sending = true;
+        }
+        try {
+            getRemote().sendString(formatData(data), this);
+        } catch (JsonProcessingException e) {
+            LOGGER.warn("Socket JSON formatting error", e);
+            writeSuccess();
         }
     }
+
+    private String formatData(Map<String, Collection<?>> data) throws JsonProcessingException {
+        StringBuilder result = new StringBuilder("{");
+        for (Map.Entry<String, Collection<?>> entry : data.entrySet()) {
+            if (result.length() > 1) {
+                result.append(',');
+            }
+            result.append('"').append(entry.getKey()).append("\":[");
+            boolean first = true;
+            for (Object object : entry.getValue()) {
+                if (!first) {
+                    result.append(',');
+                }
+                result.append(payloadCache.getPayload(object));
+                first = false;
+            }
+            result.append(']');
+        }
+        return result.append('}').toString();
+    }
+
+    private void clearPending() {
+        pendingDevices.clear();
+        pendingPositions.clear();
+        pendingEvents.clear();
+        pendingKeepalive = false;
+    }
+
 }
@@ -15,12 +15,13 @@
  */
 package org.traccar.api;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.util.Timer;
 import org.eclipse.jetty.websocket.server.JettyWebSocketServlet;
 import org.eclipse.jetty.websocket.server.JettyWebSocketServletFactory;
 import org.traccar.Context;
 import org.traccar.api.resource.SessionResource;
 import org.traccar.config.Keys;
+import org.traccar.session.cache.PayloadCache;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpSession;
@@ -28,20 +29,23 @@ import java.time.Duration;
 
 public class AsyncSocketServlet extends JettyWebSocketServlet {
 
-    private final ObjectMapper objectMapper;
+    private final PayloadCache payloadCache;
+    private final Timer timer;
 
     @Inject
-    public AsyncSocketServlet(ObjectMapper objectMapper) {
-        this.objectMapper = objectMapper;
+    public AsyncSocketServlet(PayloadCache payloadCache, Timer timer) {
+        this.payloadCache = payloadCache;
+        this.timer = timer;
     }
 
     @Override
     public void configure(JettyWebSocketServletFactory factory) {
         factory.setIdleTimeout(Duration.ofMillis(Context.getConfig().getLong(Keys.WEB_TIMEOUT)));
+        long interval = Context.getConfig().getLong(Keys.WEB_SOCKET_INTERVAL);
         factory.setCreator((req, resp) -> {
             if (req.getSession() != null) {
                 long userId = (Long) ((HttpSession) req.getSession()).getAttribute(SessionResource.USER_ID_KEY);
-                return new AsyncSocket(objectMapper, userId);
+                return new AsyncSocket(payloadCache, timer, interval, userId);
             } else {
                 return null;
             }
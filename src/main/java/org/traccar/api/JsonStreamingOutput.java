@@ -0,0 +1,76 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.storage.StorageException;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Writes objects from the source as a JSON array while they are read. If the source fails in the middle, the array is
+ * left unterminated and the response is aborted, so a client never receives a truncated but valid result.
+ */
+public class JsonStreamingOutput<T> implements StreamingOutput {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonStreamingOutput.class);
+
+    public interface Source<T> {
+        void stream(Consumer<T> consumer) throws StorageException;
+    }
+
+    private final ObjectWriter objectWriter;
+    private final Source<T> source;
+
+    public JsonStreamingOutput(ObjectMapper objectMapper, Source<T> source) {
+        this.objectWriter = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        this.source = source;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        try (JsonGenerator generator = objectWriter.createGenerator(output)) {
+            generator.writeStartArray();
+            source.stream(object -> {
+                try {
+                    objectWriter.writeValue(generator, object);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (StorageException e) {
+            LOGGER.warn("Streaming response aborted", e);
+            throw new WebApplicationException(e);
+        }
+    }
+
+}
@@ -15,7 +15,9 @@
  */
 package org.traccar.api.resource;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.traccar.api.BaseResource;
+import org.traccar.api.JsonStreamingOutput;
 import org.traccar.helper.model.PositionUtil;
 import org.traccar.model.BaseModel;
 import org.traccar.model.Device;
@@ -27,14 +29,16 @@ import org.traccar.storage.query.Columns;
 import org.traccar.storage.query.Condition;
 import org.traccar.storage.query.Request;
 
+import javax.inject.Inject;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -44,28 +48,34 @@ import java.util.stream.Collectors;
 @Consumes(MediaType.APPLICATION_JSON)
 public class PositionResource extends BaseResource {
 
+    @Inject
+    private ObjectMapper objectMapper;
+
     @GET
-    public Collection<Position> getJson(
+    public Response getJson(
             @QueryParam("deviceId") long deviceId, @QueryParam("id") List<Long> positionIds,
             @QueryParam("from") Date from, @QueryParam("to") Date to)
             throws StorageException {
         if (!positionIds.isEmpty()) {
             var positions = new ArrayList<Position>();
             for (long positionId : positionIds) {
-                Position position = storage.getObject(Position.class, new Request(
-                        new Columns.All(), new Condition.Equals("id", "id", positionId)));
+                Position position = PositionUtil.getPosition(storage, positionId);
+                if (position == null) {
+                    throw new WebApplicationException(Response.status(Response.Status.NOT_FOUND).build());
+                }
                 permissionsService.checkPermission(Device.class, getUserId(), position.getDeviceId());
                 positions.add(position);
             }
-            return positions;
+            return Response.ok(positions).build();
         } else if (deviceId > 0) {
             permissionsService.checkPermission(Device.class, getUserId(), deviceId);
             if (from != null && to != null) {
                 permissionsService.checkRestriction(getUserId(), UserRestrictions::getDisableReports);
-                return PositionUtil.getPositions(storage, deviceId, from, to);
+                return Response.ok(new JsonStreamingOutput<Position>(objectMapper,
+                        consumer -> PositionUtil.streamPositions(storage, deviceId, from, to, consumer))).build();
             } else {
-                return storage.getObjects(Position.class, new Request(
-                        new Columns.All(), new Condition.LatestPositions(deviceId)));
+                return Response.ok(storage.getObjects(Position.class, new Request(
+                        new Columns.All(), new Condition.LatestPositions(deviceId)))).build();
             }
         } else {
             var devices = storage.getObjects(Device.class, new Request(
@@ -75,9 +85,9 @@ public class PositionResource extends BaseResource {
 
             var positions = storage.getObjects(Position.class, new Request(
                     new Columns.All(), new Condition.LatestPositions()));
-            return positions.stream()
+            return Response.ok(positions.stream()
                     .filter(position -> deviceIds.contains(position.getDeviceId()))
-                    .collect(Collectors.toList());
+                    .collect(Collectors.toList())).build();
         }
     }
 
@@ -29,6 +29,7 @@ import javax.mail.internet.MimeBodyPart;
 import javax.mail.util.ByteArrayDataSource;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
@@ -36,9 +37,11 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.api.BaseResource;
+import org.traccar.api.JsonStreamingOutput;
 import org.traccar.database.MailManager;
 import org.traccar.helper.LogAction;
 import org.traccar.model.Event;
@@ -48,6 +51,9 @@ import org.traccar.model.UserRestrictions;
 import org.traccar.reports.EventsReportProvider;
 import org.traccar.reports.SummaryReportProvider;
 import org.traccar.reports.TripsReportProvider;
+import org.traccar.reports.common.DailySummaryManager;
+import org.traccar.reports.common.MotionSegmentManager;
+import org.traccar.reports.common.ReportUtils;
 import org.traccar.reports.model.StopReportItem;
 import org.traccar.reports.model.SummaryReportItem;
 import org.traccar.reports.model.TripReportItem;
@@ -83,6 +89,18 @@ public class ReportResource extends BaseResource {
     @Inject
     private MailManager mailManager;
 
+    @Inject
+    private ObjectMapper objectMapper;
+
+    @Inject
+    private ReportUtils reportUtils;
+
+    @Inject
+    private MotionSegmentManager motionSegmentManager;
+
+    @Inject
+    private DailySummaryManager dailySummaryManager;
+
     private interface ReportExecutor {
         void execute(ByteArrayOutputStream stream) throws StorageException, IOException;
     }
@@ -117,12 +135,15 @@ public class ReportResource extends BaseResource {
 
     @Path("route")
     @GET
-    public Collection<Position> getRoute(
+    public Response getRoute(
             @QueryParam("deviceId") final List<Long> deviceIds, @QueryParam("groupId") final List<Long> groupIds,
             @QueryParam("from") Date from, @QueryParam("to") Date to) throws StorageException {
-        permissionsService.checkRestriction(getUserId(), UserRestrictions::getDisableReports);
-        LogAction.logReport(getUserId(), "route", from, to, deviceIds, groupIds);
-        return routeReportProvider.getObjects(getUserId(), deviceIds, groupIds, from, to);
+        long userId = getUserId();
+        permissionsService.checkRestriction(userId, UserRestrictions::getDisableReports);
+        LogAction.logReport(userId, "route", from, to, deviceIds, groupIds);
+        routeReportProvider.checkDevices(userId, deviceIds, groupIds, from, to);
+        return Response.ok(new JsonStreamingOutput<Position>(objectMapper, consumer -> routeReportProvider.getObjects(
+                userId, deviceIds, groupIds, from, to, consumer))).build();
     }
 
     @Path("route")
@@ -241,4 +262,56 @@ public class ReportResource extends BaseResource {
         });
     }
 
+    private static void checkPeriod(Date from, Date to) {
+        if (from == null || to == null || from.after(to)) {
+            throw new IllegalArgumentException("Invalid time period");
+        }
+    }
+
+    @Path("segments")
+    @POST
+    public Response recomputeSegments(
+            @QueryParam("deviceId") final List<Long> deviceIds, @QueryParam("groupId") final List<Long> groupIds,
+            @QueryParam("from") Date from, @QueryParam("to") Date to) throws StorageException {
+        permissionsService.checkAdmin(getUserId());
+        if (!motionSegmentManager.isEnabled()) {
+            throw new IllegalArgumentException("Trip materialization is disabled");
+        }
+        checkPeriod(from, to);
+        var devices = reportUtils.getDeviceList(deviceIds, groupIds);
+        new Thread(() -> {
+            try {
+                for (long deviceId : devices) {
+                    motionSegmentManager.recompute(deviceId, from, to);
+                }
+            } catch (StorageException e) {
+                LOGGER.warn("Motion segments recompute failed", e);
+            }
+        }).start();
+        return Response.noContent().build();
+    }
+
+    @Path("summaries")
+    @POST
+    public Response rebuildSummaries(
+            @QueryParam("deviceId") final List<Long> deviceIds, @QueryParam("groupId") final List<Long> groupIds,
+            @QueryParam("from") Date from, @QueryParam("to") Date to) throws StorageException {
+        permissionsService.checkAdmin(getUserId());
+        if (!dailySummaryManager.isEnabled()) {
+            throw new IllegalArgumentException("Summary materialization is disabled");
+        }
+        checkPeriod(from, to);
+        var devices = reportUtils.getDeviceList(deviceIds, groupIds);
+        new Thread(() -> {
+            try {
+                for (long deviceId : devices) {
+                    dailySummaryManager.rebuild(deviceId, from, to);
+                }
+            } catch (StorageException e) {
+                LOGGER.warn("Daily summaries rebuild failed", e);
+            }
+        }).start();
+        return Response.noContent().build();
+    }
+
 }
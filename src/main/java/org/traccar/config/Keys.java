@@ -335,6 +335,79 @@ public final class Keys {
             "database.maxPoolSize",
             Collections.singletonList(KeyType.GLOBAL));
 
+    /**
+     * Number of prepared statements cached by the JDBC driver per connection. Applied to MySQL / MariaDB and
+     * PostgreSQL drivers. Enabling it also switches drivers to server side prepared statements. Disabled by default,
+     * which leaves driver defaults untouched.
+     */
+    public static final ConfigKey<Integer> DATABASE_STATEMENT_CACHE_SIZE = new ConfigKey<>(
+            "database.statementCacheSize",
+            Collections.singletonList(KeyType.GLOBAL),
+            0);
+
+    /**
+     * Number of rows fetched from the database per round trip when large result sets, like position history, are
+     * streamed instead of loaded into memory. Set to 0 to use driver default behaviour.
+     * Streaming holds a pooled connection, and on PostgreSQL an open transaction, until the whole result is consumed,
+     * which includes writing the response to a slow HTTP client. Use database.streamTimeout to limit it if needed.
+     */
+    public static final ConfigKey<Integer> DATABASE_FETCH_SIZE = new ConfigKey<>(
+            "database.fetchSize",
+            Collections.singletonList(KeyType.GLOBAL),
+            1000);
+
+    /**
+     * Optional limit in seconds for how long a streamed query can hold a database connection. The stream is aborted
+     * with an error when the limit is reached, so it should be longer than the largest expected export. Disabled by
+     * default.
+     */
+    public static final ConfigKey<Integer> DATABASE_STREAM_TIMEOUT = new ConfigKey<>(
+            "database.streamTimeout",
+            Collections.singletonList(KeyType.GLOBAL),
+            0);
+
+    /**
+     * Partition positions and events tables by month. Currently only supported for PostgreSQL, where existing data is
+     * kept as a single legacy partition. Partitioning can't be disabled once the database schema is converted.
+     */
+    public static final ConfigKey<Boolean> DATABASE_PARTITION = new ConfigKey<>(
+            "database.partition",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Number of days to keep positions and events. Older data is removed periodically. With partitioning enabled
+     * whole monthly partitions are dropped once all their data is older than the retention period. By default data
+     * is kept forever.
+     */
+    public static final ConfigKey<Integer> DATABASE_RETENTION_DAYS = new ConfigKey<>(
+            "database.retentionDays",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Directory for the position archive. Positions older than the archive period are moved from the database into
+     * compressed files in this directory. History and reports read archived data transparently.
+     */
+    public static final ConfigKey<String> DATABASE_ARCHIVE_PATH = new ConfigKey<>(
+            "database.archivePath",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Number of days positions are kept in the database before moving them to the archive. The last position of
+     * each device is always kept in the database. Default value is 90 days.
+     */
+    public static final ConfigKey<Integer> DATABASE_ARCHIVE_DAYS = new ConfigKey<>(
+            "database.archiveDays",
+            Collections.singletonList(KeyType.GLOBAL),
+            90);
+
+    /**
+     * Store position attributes in compact binary format instead of JSON. Existing JSON attributes are still readable,
+     * so the option can be enabled at any time. Disabling it makes new positions use JSON again.
+     */
+    public static final ConfigKey<Boolean> DATABASE_BINARY_ATTRIBUTES = new ConfigKey<>(
+            "database.binaryAttributes",
+            Collections.singletonList(KeyType.GLOBAL));
+
     /**
      * SQL query to check connection status. Default value is 'SELECT 1'. For Oracle database you can use
      * 'SELECT 1 FROM DUAL'.
@@ -395,6 +468,39 @@ public final class Keys {
             "database.saveEmpty",
             Collections.singletonList(KeyType.GLOBAL));
 
+    /**
+     * Maximum number of positions written to the database in a single batch. By default batching is disabled and
+     * each position is stored synchronously by the pipeline thread that decoded it.
+     */
+    public static final ConfigKey<Integer> DATABASE_BATCH_SIZE = new ConfigKey<>(
+            "database.batch.size",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Maximum time in milliseconds the writer waits for a batch to fill up before flushing it.
+     */
+    public static final ConfigKey<Long> DATABASE_BATCH_LINGER = new ConfigKey<>(
+            "database.batch.linger",
+            Collections.singletonList(KeyType.GLOBAL),
+            20L);
+
+    /**
+     * Number of positions that can be queued per writer thread. When the queue is full, the pipeline thread waits
+     * for the writer to catch up.
+     */
+    public static final ConfigKey<Integer> DATABASE_BATCH_QUEUE_SIZE = new ConfigKey<>(
+            "database.batch.queueSize",
+            Collections.singletonList(KeyType.GLOBAL),
+            10000);
+
+    /**
+     * Number of database writer threads. Positions of the same device are always handled by the same thread.
+     */
+    public static final ConfigKey<Integer> DATABASE_BATCH_THREADS = new ConfigKey<>(
+            "database.batch.threads",
+            Collections.singletonList(KeyType.GLOBAL),
+            1);
+
     /**
      * Device limit for self registered users. Default value is -1, which indicates no limit.
      */
@@ -561,6 +667,14 @@ public final class Keys {
             Collections.singletonList(KeyType.GLOBAL),
             60000L);
 
+    /**
+     * WebSocket update aggregation window in milliseconds. Updates received within the window are merged into a single
+     * message and only the latest position of each device is sent. By default updates are sent immediately.
+     */
+    public static final ConfigKey<Long> WEB_SOCKET_INTERVAL = new ConfigKey<>(
+            "web.socketInterval",
+            Collections.singletonList(KeyType.GLOBAL));
+
     /**
      * Authentication sessions timeout in seconds. By default no timeout.
      */
@@ -826,6 +940,24 @@ public final class Keys {
             "report.periodLimit",
             Collections.singletonList(KeyType.GLOBAL));
 
+    /**
+     * Number of devices processed concurrently when generating reports. Threads are shared by all report requests.
+     * Default value is 4. Use 1 to process devices sequentially.
+     */
+    public static final ConfigKey<Integer> REPORT_PARALLELISM = new ConfigKey<>(
+            "report.parallelism",
+            Collections.singletonList(KeyType.GLOBAL),
+            4);
+
+    /**
+     * Maintain daily per-device summary rollups when positions are received. Summary reports read the rollups for
+     * complete days and only process raw positions for the remaining part of the period. History can be rebuilt
+     * using the summary rebuild API.
+     */
+    public static final ConfigKey<Boolean> REPORT_SUMMARY_MATERIALIZE = new ConfigKey<>(
+            "report.summary.materialize",
+            Collections.singletonList(KeyType.GLOBAL));
+
     /**
      * Trips less than minimal duration and minimal distance are ignored. 300 seconds and 500 meters are default.
      */
@@ -865,6 +997,14 @@ public final class Keys {
             "report.trip.useIgnition",
             Collections.singletonList(KeyType.GLOBAL));
 
+    /**
+     * Detect trips and stops when positions are received and store them in the database. Trips and stops reports
+     * are then generated from stored segments instead of processing full position history.
+     */
+    public static final ConfigKey<Boolean> REPORT_TRIP_MATERIALIZE = new ConfigKey<>(
+            "report.trip.materialize",
+            Collections.singletonList(KeyType.GLOBAL));
+
     /**
      * Boolean flag to enable or disable position filtering.
      */
@@ -1016,6 +1156,32 @@ public final class Keys {
             "coordinates.maxError",
             Collections.singletonList(KeyType.GLOBAL));
 
+    /**
+     * Number of threads used to run position processing handlers outside of the network event loops. By default
+     * processing is done by the network threads. Handlers of a single connection always run on the same thread, so
+     * the order of positions is preserved.
+     */
+    public static final ConfigKey<Integer> PROCESSING_THREADS = new ConfigKey<>(
+            "processing.threads",
+            Collections.singletonList(KeyType.GLOBAL));
+
+    /**
+     * Name of the first pipeline handler that runs on the processing threads. All handlers after it are also moved
+     * to the processing threads. By default all handlers after protocol decoding are moved.
+     */
+    public static final ConfigKey<String> PROCESSING_OFFLOAD_HANDLER = new ConfigKey<>(
+            "processing.offloadHandler",
+            Collections.singletonList(KeyType.GLOBAL),
+            "TimeHandler");
+
+    /**
+     * Enable collection of processing metrics. Metrics are available in Prometheus text format via the
+     * '/api/metrics' endpoint for administrators. Disabled by default.
+     */
+    public static final ConfigKey<Boolean> PROCESSING_METRICS_ENABLE = new ConfigKey<>(
+            "processing.metrics.enable",
+            Collections.singletonList(KeyType.GLOBAL));
+
     /**
      * Enable to save device IP addresses information. Disabled by default.
      */
@@ -77,7 +77,7 @@ public class DataManager {
         initDatabase();
         initDatabaseSchema();
 
-        storage = new DatabaseStorage(dataSource, Main.getInjector().getInstance(ObjectMapper.class));
+        storage = new DatabaseStorage(config, dataSource, Main.getInjector().getInstance(ObjectMapper.class));
     }
 
     private void initDatabase() throws Exception {
@@ -115,6 +115,26 @@ public class DataManager {
             hikariConfig.setMaximumPoolSize(maxPoolSize);
         }
 
+        int statementCacheSize = config.getInteger(Keys.DATABASE_STATEMENT_CACHE_SIZE);
+        String url = hikariConfig.getJdbcUrl();
+        if (url != null && (url.startsWith("jdbc:mysql:") || url.startsWith("jdbc:mariadb:"))) {
+            if (statementCacheSize > 0) {
+                hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
+                hikariConfig.addDataSourceProperty("prepStmtCacheSize", String.valueOf(statementCacheSize));
+                hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "4096");
+                hikariConfig.addDataSourceProperty("useServerPrepStmts", "true");
+            }
+            if (config.getInteger(Keys.DATABASE_FETCH_SIZE) > 0) {
+                hikariConfig.addDataSourceProperty("useCursorFetch", "true");
+            }
+        } else if (url != null && url.startsWith("jdbc:postgresql:")) {
+            if (statementCacheSize > 0) {
+                hikariConfig.addDataSourceProperty("prepareThreshold", "1");
+                hikariConfig.addDataSourceProperty(
+                        "preparedStatementCacheQueries", String.valueOf(statementCacheSize));
+            }
+        }
+
         dataSource = new HikariDataSource(hikariConfig);
     }
 
@@ -133,9 +153,11 @@ public class DataManager {
 
             String changelog = config.getString(Keys.DATABASE_CHANGELOG);
 
+            Contexts contexts = new Contexts(config.getBoolean(Keys.DATABASE_PARTITION) ? "partition" : "common");
+
             try (Liquibase liquibase = new Liquibase(changelog, resourceAccessor, database)) {
                 liquibase.clearCheckSums();
-                liquibase.update(new Contexts());
+                liquibase.update(contexts);
             }
         }
     }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.LifecycleObject;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.metrics.MetricsManager;
+import org.traccar.model.Position;
+import org.traccar.storage.Storage;
+import org.traccar.storage.StorageException;
+import org.traccar.storage.query.Columns;
+import org.traccar.storage.query.Request;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@Singleton
+public class PositionWriter implements LifecycleObject {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PositionWriter.class);
+
+    private static final Request INSERT_REQUEST = new Request(new Columns.Exclude("id"));
+
+    private final Storage storage;
+    private final MetricsManager metricsManager;
+    private final int batchSize;
+    private final long linger;
+    private final List<Writer> writers = new ArrayList<>();
+
+    private volatile boolean running;
+
+    @Inject
+    public PositionWriter(Config config, Storage storage, MetricsManager metricsManager) {
+        this.storage = storage;
+        this.metricsManager = metricsManager;
+        batchSize = config.getInteger(Keys.DATABASE_BATCH_SIZE);
+        linger = TimeUnit.MILLISECONDS.toNanos(config.getLong(Keys.DATABASE_BATCH_LINGER));
+        if (batchSize > 0) {
+            int threads = Math.max(config.getInteger(Keys.DATABASE_BATCH_THREADS), 1);
+            int queueSize = Math.max(config.getInteger(Keys.DATABASE_BATCH_QUEUE_SIZE), batchSize);
+            for (int i = 0; i < threads; i++) {
+                Writer writer = new Writer(i, queueSize);
+                writers.add(writer);
+                metricsManager.registerGauge(
+                        "traccar_position_writer_queue_size", "writer=\"" + i + "\"", () -> writer.queue.size());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return !writers.isEmpty();
+    }
+
+    /**
+     * Queue position for a batched insert. If the queue stays full for longer than the batch linger time, or the
+     * writer is stopped, the position is stored synchronously instead, so the caller thread is never blocked for
+     * long and every returned future completes.
+     */
+    public CompletableFuture<Position> write(Position position) {
+        CompletableFuture<Position> future = new CompletableFuture<>();
+        if (running) {
+            Writer writer = writers.get((int) Math.floorMod(position.getDeviceId(), (long) writers.size()));
+            Entry entry = new Entry(position, future);
+            try {
+                if (writer.queue.offer(entry, linger, TimeUnit.NANOSECONDS)
+                        && (running || !writer.queue.remove(entry))) {
+                    return future;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        storeSingle(position);
+        future.complete(position);
+        return future;
+    }
+
+    private void storeSingle(Position position) {
+        long startTime = System.nanoTime();
+        boolean success = false;
+        try {
+            position.setId(storage.addObject(position, INSERT_REQUEST));
+            success = true;
+        } catch (StorageException error) {
+            LOGGER.warn("Failed to store position", error);
+        }
+        metricsManager.registerDatabaseWrite(System.nanoTime() - startTime, success);
+    }
+
+    private void store(List<Entry> batch) {
+        List<Position> positions = batch.stream().map(entry -> entry.position).collect(Collectors.toList());
+        long startTime = System.nanoTime();
+        try {
+            List<Long> ids = storage.addObjects(positions, INSERT_REQUEST);
+            for (int i = 0; i < positions.size(); i++) {
+                positions.get(i).setId(ids.get(i));
+            }
+            metricsManager.registerDatabaseWrite(System.nanoTime() - startTime, true);
+        } catch (StorageException error) {
+            metricsManager.registerDatabaseWrite(System.nanoTime() - startTime, false);
+            LOGGER.warn("Failed to store positions batch, falling back to single inserts", error);
+            positions.forEach(this::storeSingle);
+        }
+        for (Entry entry : batch) {
+            entry.future.complete(entry.position);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (isEnabled()) {
+            running = true;
+            writers.forEach(Thread::start);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        for (Writer writer : writers) {
+            writer.interrupt();
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writers.forEach(Writer::flush);
+    }
+
+    private static final class Entry {
+
+        private final Position position;
+        private final CompletableFuture<Position> future;
+
+        private Entry(Position position, CompletableFuture<Position> future) {
+            this.position = position;
+            this.future = future;
+        }
+
+    }
+
+    private final class Writer extends Thread {
+
+        private final BlockingQueue<Entry> queue;
+        private final List<Entry> batch = new ArrayList<>();
+
+        private Writer(int index, int queueSize) {
+            super("position-writer-" + index);
+            setDaemon(true);
+            queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        private void flush() {
+            queue.drainTo(batch);
+            if (!batch.isEmpty()) {
+                store(batch);
+                batch.clear();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    Entry first = queue.take();
+                    batch.add(first);
+                    long deadline = System.nanoTime() + linger;
+                    while (batch.size() < batchSize) {
+                        if (queue.drainTo(batch, batchSize - batch.size()) == 0) {
+                            long remaining = deadline - System.nanoTime();
+                            Entry next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                            if (next == null) {
+                                break;
+                            }
+                            batch.add(next);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                }
+                store(batch);
+                batch.clear();
+            }
+        }
+
+    }
+
+}
@@ -33,10 +33,14 @@ import javax.ws.rs.core.Form;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 
 @Singleton
 public class StatisticsManager {
@@ -52,16 +56,23 @@ public class StatisticsManager {
 
     private final AtomicInteger lastUpdate = new AtomicInteger(Calendar.getInstance().get(SPLIT_MODE));
 
-    private final Set<Long> users = new HashSet<>();
-    private final Map<Long, String> deviceProtocols = new HashMap<>();
+    private final AtomicReference<Set<Long>> users = new AtomicReference<>(ConcurrentHashMap.newKeySet());
+    private final AtomicReference<Map<Long, String>> deviceProtocols =
+            new AtomicReference<>(new ConcurrentHashMap<>());
 
-    private int requests;
-    private int messagesReceived;
-    private int messagesStored;
-    private int mailSent;
-    private int smsSent;
-    private int geocoderRequests;
-    private int geolocationRequests;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder messagesReceived = new LongAdder();
+    private final LongAdder messagesStored = new LongAdder();
+    private final LongAdder mailSent = new LongAdder();
+    private final LongAdder smsSent = new LongAdder();
+    private final LongAdder geocoderRequests = new LongAdder();
+    private final LongAdder geolocationRequests = new LongAdder();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "statistics");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     @Inject
     public StatisticsManager(Config config, DataManager dataManager, Client client, ObjectMapper objectMapper) {
@@ -71,115 +82,115 @@ public class StatisticsManager {
         this.objectMapper = objectMapper;
     }
 
-    private void checkSplit() {
+    public void checkSplit() {
         int currentUpdate = Calendar.getInstance().get(SPLIT_MODE);
         if (lastUpdate.getAndSet(currentUpdate) != currentUpdate) {
             Statistics statistics = new Statistics();
 
-            synchronized (this) {
-                statistics.setCaptureTime(new Date());
-                statistics.setActiveUsers(users.size());
-                statistics.setActiveDevices(deviceProtocols.size());
-                statistics.setRequests(requests);
-                statistics.setMessagesReceived(messagesReceived);
-                statistics.setMessagesStored(messagesStored);
-                statistics.setMailSent(mailSent);
-                statistics.setSmsSent(smsSent);
-                statistics.setGeocoderRequests(geocoderRequests);
-                statistics.setGeolocationRequests(geolocationRequests);
-                if (!deviceProtocols.isEmpty()) {
-                    Map<String, Integer> protocols = new HashMap<>();
-                    for (String protocol : deviceProtocols.values()) {
-                        protocols.compute(protocol, (key, count) -> count != null ? count + 1 : 1);
-                    }
-                    statistics.setProtocols(protocols);
+            Set<Long> currentUsers = users.getAndSet(ConcurrentHashMap.newKeySet());
+            Map<Long, String> currentDeviceProtocols = deviceProtocols.getAndSet(new ConcurrentHashMap<>());
+
+            statistics.setCaptureTime(new Date());
+            statistics.setActiveUsers(currentUsers.size());
+            statistics.setActiveDevices(currentDeviceProtocols.size());
+            statistics.setRequests((int) requests.sumThenReset());
+            statistics.setMessagesReceived((int) messagesReceived.sumThenReset());
+            statistics.setMessagesStored((int) messagesStored.sumThenReset());
+            statistics.setMailSent((int) mailSent.sumThenReset());
+            statistics.setSmsSent((int) smsSent.sumThenReset());
+            statistics.setGeocoderRequests((int) geocoderRequests.sumThenReset());
+            statistics.setGeolocationRequests((int) geolocationRequests.sumThenReset());
+            if (!currentDeviceProtocols.isEmpty()) {
+                Map<String, Integer> protocols = new HashMap<>();
+                for (String protocol : currentDeviceProtocols.values()) {
+                    protocols.compute(protocol, (key, count) -> count != null ? count + 1 : 1);
                 }
-
-                users.clear();
-                deviceProtocols.clear();
-                requests = 0;
-                messagesReceived = 0;
-                messagesStored = 0;
-                mailSent = 0;
-                smsSent = 0;
-                geocoderRequests = 0;
-                geolocationRequests = 0;
+                statistics.setProtocols(protocols);
             }
 
-            try {
-                dataManager.addObject(statistics);
-            } catch (StorageException e) {
-                LOGGER.warn("Error saving statistics", e);
-            }
+            executor.execute(() -> store(statistics));
+        }
+    }
 
-            String url = config.getString(Keys.SERVER_STATISTICS);
-            if (url != null) {
-                String time = DateUtil.formatDate(statistics.getCaptureTime());
-
-                Form form = new Form();
-                form.param("version", getClass().getPackage().getImplementationVersion());
-                form.param("captureTime", time);
-                form.param("activeUsers", String.valueOf(statistics.getActiveUsers()));
-                form.param("activeDevices", String.valueOf(statistics.getActiveDevices()));
-                form.param("requests", String.valueOf(statistics.getRequests()));
-                form.param("messagesReceived", String.valueOf(statistics.getMessagesReceived()));
-                form.param("messagesStored", String.valueOf(statistics.getMessagesStored()));
-                form.param("mailSent", String.valueOf(statistics.getMailSent()));
-                form.param("smsSent", String.valueOf(statistics.getSmsSent()));
-                form.param("geocoderRequests", String.valueOf(statistics.getGeocoderRequests()));
-                form.param("geolocationRequests", String.valueOf(statistics.getGeolocationRequests()));
-                if (statistics.getProtocols() != null) {
-                    try {
-                        form.param("protocols", objectMapper.writeValueAsString(statistics.getProtocols()));
-                    } catch (JsonProcessingException e) {
-                        LOGGER.warn("Failed to serialize protocols", e);
-                    }
-                }
+    private void store(Statistics statistics) {
+        try {
+            dataManager.addObject(statistics);
+        } catch (StorageException e) {
+            LOGGER.warn("Error saving statistics", e);
+        }
 
-                client.target(url).request().async().post(Entity.form(form));
+        String url = config.getString(Keys.SERVER_STATISTICS);
+        if (url != null) {
+            String time = DateUtil.formatDate(statistics.getCaptureTime());
+
+            Form form = new Form();
+            form.param("version", getClass().getPackage().getImplementationVersion());
+            form.param("captureTime", time);
+            form.param("activeUsers", String.valueOf(statistics.getActiveUsers()));
+            form.param("activeDevices", String.valueOf(statistics.getActiveDevices()));
+            form.param("requests", String.valueOf(statistics.getRequests()));
+            form.param("messagesReceived", String.valueOf(statistics.getMessagesReceived()));
+            form.param("messagesStored", String.valueOf(statistics.getMessagesStored()));
+            form.param("mailSent", String.valueOf(statistics.getMailSent()));
+            form.param("smsSent", String.valueOf(statistics.getSmsSent()));
+            form.param("geocoderRequests", String.valueOf(statistics.getGeocoderRequests()));
+            form.param("geolocationRequests", String.valueOf(statistics.getGeolocationRequests()));
+            if (statistics.getProtocols() != null) {
+                try {
+                    form.param("protocols", objectMapper.writeValueAsString(statistics.getProtocols()));
+                } catch (JsonProcessingException e) {
+                    LOGGER.warn("Failed to serialize protocols", e);
+                }
             }
+
+            client.target(url).request().async().post(Entity.form(form));
         }
     }
 
-    public synchronized void registerRequest(long userId) {
-        checkSplit();
-        requests += 1;
+    public void registerRequest(long userId) {
+        requests.increment();
         if (userId != 0) {
-            users.add(userId);
+            Set<Long> current = users.get();
+            current.add(userId);
+            Set<Long> latest = users.get();
+            if (latest != current) {
+                // set was swapped concurrently, count user in the new period so it is not lost
+                latest.add(userId);
+            }
         }
     }
 
-    public synchronized void registerMessageReceived() {
-        checkSplit();
-        messagesReceived += 1;
+    public void registerMessageReceived() {
+        messagesReceived.increment();
     }
 
-    public synchronized void registerMessageStored(long deviceId, String protocol) {
-        checkSplit();
-        messagesStored += 1;
+    public void registerMessageStored(long deviceId, String protocol) {
+        messagesStored.increment();
         if (deviceId != 0) {
-            deviceProtocols.put(deviceId, protocol);
+            Map<Long, String> current = deviceProtocols.get();
+            current.put(deviceId, protocol);
+            Map<Long, String> latest = deviceProtocols.get();
+            if (latest != current) {
+                // map was swapped concurrently, count device in the new period so it is not lost
+                latest.put(deviceId, protocol);
+            }
         }
     }
 
-    public synchronized void registerMail() {
-        checkSplit();
-        mailSent += 1;
+    public void registerMail() {
+        mailSent.increment();
     }
 
-    public synchronized void registerSms() {
-        checkSplit();
-        smsSent += 1;
+    public void registerSms() {
+        smsSent.increment();
     }
 
-    public synchronized void registerGeocoderRequest() {
-        checkSplit();
-        geocoderRequests += 1;
+    public void registerGeocoderRequest() {
+        geocoderRequests.increment();
     }
 
-    public synchronized void registerGeolocationRequest() {
-        checkSplit();
-        geolocationRequests += 1;
+    public void registerGeolocationRequest() {
+        geolocationRequests.increment();
     }
 
 }
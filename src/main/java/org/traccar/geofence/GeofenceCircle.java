@@ -18,6 +18,7 @@ package org.traccar.geofence;
 import java.text.DecimalFormat;
 import java.text.ParseException;
 
+import org.locationtech.jts.geom.Envelope;
 import org.traccar.helper.DistanceCalculator;
 
 public class GeofenceCircle extends GeofenceGeometry {
@@ -48,6 +49,11 @@ public class GeofenceCircle extends GeofenceGeometry {
         return distanceFromCenter(latitude, longitude) <= radius;
     }
 
+    @Override
+    public Envelope getEnvelope() {
+        return expandEnvelope(new Envelope(centerLongitude, centerLongitude, centerLatitude, centerLatitude), radius);
+    }
+
     @Override
     public double calculateArea() {
         return Math.PI * radius * radius;
@@ -15,12 +15,39 @@
  */
 package org.traccar.geofence;
 
+import org.locationtech.jts.geom.Envelope;
+import org.traccar.helper.DistanceCalculator;
+
 import java.text.ParseException;
 
 public abstract class GeofenceGeometry {
 
+    protected static final double DEGREE_DISTANCE = DistanceCalculator.distance(0, 0, 1, 0);
+    protected static final double ENVELOPE_MARGIN = 1.1;
+
     public abstract boolean containsPoint(double latitude, double longitude);
 
+    /**
+     * Bounding box with longitude as x and latitude as y. It must include every point that the geometry contains.
+     */
+    public abstract Envelope getEnvelope();
+
+    protected static Envelope expandEnvelope(Envelope envelope, double distance) {
+        double latitudeDelta = distance * ENVELOPE_MARGIN / DEGREE_DISTANCE;
+        double minLat = envelope.getMinY() - latitudeDelta;
+        double maxLat = envelope.getMaxY() + latitudeDelta;
+        if (minLat <= -90 || maxLat >= 90) {
+            return new Envelope(-180, 180, Math.max(minLat, -90), Math.min(maxLat, 90));
+        }
+        double longitudeDelta = latitudeDelta / Math.cos(Math.toRadians(Math.max(-minLat, maxLat)));
+        double minLon = envelope.getMinX() - longitudeDelta;
+        double maxLon = envelope.getMaxX() + longitudeDelta;
+        if (minLon < -180 || maxLon > 180) {
+            return new Envelope(-180, 180, minLat, maxLat);
+        }
+        return new Envelope(minLon, maxLon, minLat, maxLat);
+    }
+
     public abstract double calculateArea();
 
     public abstract String toWkt();
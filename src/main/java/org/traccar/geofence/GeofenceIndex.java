@@ -0,0 +1,103 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.geofence;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.quadtree.Quadtree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+public class GeofenceIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Quadtree tree = new Quadtree();
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    public void put(long id, GeofenceGeometry geometry) {
+        Entry entry = new Entry(id, geometry);
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.put(id, entry);
+            if (previous != null) {
+                tree.remove(previous.envelope, previous);
+            }
+            tree.insert(entry.envelope, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.remove(id);
+            if (previous != null) {
+                tree.remove(previous.envelope, previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Long> getContaining(double latitude, double longitude, LongPredicate filter) {
+        List<Entry> candidates;
+        lock.readLock().lock();
+        try {
+            candidates = tree.query(new Envelope(longitude, longitude, latitude, latitude));
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Long> result = new ArrayList<>();
+        for (Entry entry : candidates) {
+            if (entry.envelope.contains(longitude, latitude) && filter.test(entry.id)
+                    && entry.geometry.containsPoint(latitude, longitude)) {
+                result.add(entry.id);
+            }
+        }
+        return result;
+    }
+
+    private static final class Entry {
+
+        private final long id;
+        private final GeofenceGeometry geometry;
+        private final Envelope envelope;
+
+        private Entry(long id, GeofenceGeometry geometry) {
+            this.id = id;
+            this.geometry = geometry;
+            this.envelope = geometry.getEnvelope();
+        }
+
+    }
+
+}
@@ -15,18 +15,21 @@
  */
 package org.traccar.geofence;
 
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.spatial4j.context.SpatialContext;
 import org.locationtech.spatial4j.context.jts.JtsSpatialContextFactory;
 import org.locationtech.spatial4j.shape.ShapeFactory;
 import org.locationtech.spatial4j.shape.jts.JtsShapeFactory;
 
 import java.text.ParseException;
-import java.util.ArrayList;
 
 import static org.locationtech.spatial4j.distance.DistanceUtils.DEG_TO_KM;
 
 public class GeofencePolygon extends GeofenceGeometry {
 
+    private static final int INDEX_MIN_CORNERS = 32;
+    private static final int INDEX_CORNERS_PER_BUCKET = 4;
+
     public GeofencePolygon() {
     }
 
@@ -34,57 +37,116 @@ public class GeofencePolygon extends GeofenceGeometry {
         fromWkt(wkt);
     }
 
-    private ArrayList<Coordinate> coordinates;
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] normalizedLongitudes;
 
     private double[] constant;
     private double[] multiple;
 
     private boolean needNormalize = false;
 
-    private void preCalculate() {
-        if (coordinates == null) {
-            return;
-        }
+    private double minLatitude;
+    private double maxLatitude;
+    private double minLongitude;
+    private double maxLongitude;
 
-        int polyCorners = coordinates.size();
-        int i;
-        int j = polyCorners - 1;
+    private int bucketCount;
+    private double bucketWidth;
+    private int[] bucketOffsets;
+    private int[] bucketEdges;
 
-        if (constant != null) {
-            constant = null;
-        }
-        if (multiple != null) {
-            multiple = null;
-        }
-
-        constant = new double[polyCorners];
-        multiple = new double[polyCorners];
+    private void preCalculate() {
+        int polyCorners = latitudes.length;
 
         boolean hasNegative = false;
         boolean hasPositive = false;
-        for (i = 0; i < polyCorners; i++) {
-            if (coordinates.get(i).getLon() > 90) {
+        for (int i = 0; i < polyCorners; i++) {
+            if (longitudes[i] > 90) {
                 hasPositive = true;
-            } else if (coordinates.get(i).getLon() < -90) {
+            } else if (longitudes[i] < -90) {
                 hasNegative = true;
             }
         }
         needNormalize = hasPositive && hasNegative;
 
-        for (i = 0; i < polyCorners; j = i++) {
-            if (normalizeLon(coordinates.get(j).getLon()) == normalizeLon(coordinates.get(i).getLon())) {
-                constant[i] = coordinates.get(i).getLat();
+        normalizedLongitudes = new double[polyCorners];
+        minLatitude = Double.POSITIVE_INFINITY;
+        maxLatitude = Double.NEGATIVE_INFINITY;
+        minLongitude = Double.POSITIVE_INFINITY;
+        maxLongitude = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < polyCorners; i++) {
+            normalizedLongitudes[i] = normalizeLon(longitudes[i]);
+            minLatitude = Math.min(minLatitude, latitudes[i]);
+            maxLatitude = Math.max(maxLatitude, latitudes[i]);
+            minLongitude = Math.min(minLongitude, normalizedLongitudes[i]);
+            maxLongitude = Math.max(maxLongitude, normalizedLongitudes[i]);
+        }
+
+        constant = new double[polyCorners];
+        multiple = new double[polyCorners];
+
+        for (int i = 0, j = polyCorners - 1; i < polyCorners; j = i++) {
+            double lonI = normalizedLongitudes[i];
+            double lonJ = normalizedLongitudes[j];
+            if (lonJ == lonI) {
+                constant[i] = latitudes[i];
                 multiple[i] = 0;
             } else {
-                constant[i] = coordinates.get(i).getLat()
-                        - (normalizeLon(coordinates.get(i).getLon()) * coordinates.get(j).getLat())
-                        / (normalizeLon(coordinates.get(j).getLon()) - normalizeLon(coordinates.get(i).getLon()))
-                        + (normalizeLon(coordinates.get(i).getLon()) * coordinates.get(i).getLat())
-                        / (normalizeLon(coordinates.get(j).getLon()) - normalizeLon(coordinates.get(i).getLon()));
-                multiple[i] = (coordinates.get(j).getLat() - coordinates.get(i).getLat())
-                        / (normalizeLon(coordinates.get(j).getLon()) - normalizeLon(coordinates.get(i).getLon()));
+                constant[i] = latitudes[i]
+                        - (lonI * latitudes[j]) / (lonJ - lonI)
+                        + (lonI * latitudes[i]) / (lonJ - lonI);
+                multiple[i] = (latitudes[j] - latitudes[i]) / (lonJ - lonI);
+            }
+        }
+
+        buildIndex();
+    }
+
+    private int getBucket(double longitude) {
+        int bucket = (int) ((longitude - minLongitude) / bucketWidth);
+        return Math.max(0, Math.min(bucket, bucketCount - 1));
+    }
+
+    private void buildIndex() {
+        int polyCorners = latitudes.length;
+        bucketOffsets = null;
+        bucketEdges = null;
+        if (polyCorners < INDEX_MIN_CORNERS || maxLongitude <= minLongitude) {
+            return;
+        }
+
+        bucketCount = polyCorners / INDEX_CORNERS_PER_BUCKET;
+        bucketWidth = (maxLongitude - minLongitude) / bucketCount;
+
+        int[] counts = new int[bucketCount + 1];
+        for (int i = 0, j = polyCorners - 1; i < polyCorners; j = i++) {
+            if (normalizedLongitudes[i] != normalizedLongitudes[j]) {
+                int first = getBucket(Math.min(normalizedLongitudes[i], normalizedLongitudes[j]));
+                int last = getBucket(Math.max(normalizedLongitudes[i], normalizedLongitudes[j]));
+                for (int bucket = first; bucket <= last; bucket++) {
+                    counts[bucket + 1] += 1;
+                }
             }
         }
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            counts[bucket + 1] += counts[bucket];
+        }
+
+        int[] offsets = counts.clone();
+        int[] edges = new int[counts[bucketCount]];
+        for (int i = 0, j = polyCorners - 1; i < polyCorners; j = i++) {
+            if (normalizedLongitudes[i] != normalizedLongitudes[j]) {
+                int first = getBucket(Math.min(normalizedLongitudes[i], normalizedLongitudes[j]));
+                int last = getBucket(Math.max(normalizedLongitudes[i], normalizedLongitudes[j]));
+                for (int bucket = first; bucket <= last; bucket++) {
+                    edges[offsets[bucket]++] = i;
+                }
+            }
+        }
+
+        bucketOffsets = counts;
+        bucketEdges = edges;
     }
 
     private double normalizeLon(double lon) {
@@ -94,32 +156,53 @@ public class GeofencePolygon extends GeofenceGeometry {
         return lon;
     }
 
+    private boolean crossesEdge(int i, int j, double latitude, double longitude) {
+        double lonI = normalizedLongitudes[i];
+        double lonJ = normalizedLongitudes[j];
+        return (lonI < longitude && lonJ >= longitude || lonJ < longitude && lonI >= longitude)
+                && longitude * multiple[i] + constant[i] < latitude;
+    }
+
     @Override
     public boolean containsPoint(double latitude, double longitude) {
 
-        int polyCorners = coordinates.size();
-        int i;
-        int j = polyCorners - 1;
         double longitudeNorm = normalizeLon(longitude);
+        if (latitude < minLatitude || latitude > maxLatitude
+                || longitudeNorm < minLongitude || longitudeNorm > maxLongitude) {
+            return false;
+        }
+
+        int polyCorners = latitudes.length;
         boolean oddNodes = false;
 
-        for (i = 0; i < polyCorners; j = i++) {
-            if (normalizeLon(coordinates.get(i).getLon()) < longitudeNorm
-                    && normalizeLon(coordinates.get(j).getLon()) >= longitudeNorm
-                    || normalizeLon(coordinates.get(j).getLon()) < longitudeNorm
-                    && normalizeLon(coordinates.get(i).getLon()) >= longitudeNorm) {
-                oddNodes ^= longitudeNorm * multiple[i] + constant[i] < latitude;
+        if (bucketEdges != null) {
+            int bucket = getBucket(longitudeNorm);
+            for (int k = bucketOffsets[bucket]; k < bucketOffsets[bucket + 1]; k++) {
+                int i = bucketEdges[k];
+                oddNodes ^= crossesEdge(i, i > 0 ? i - 1 : polyCorners - 1, latitude, longitudeNorm);
+            }
+        } else {
+            for (int i = 0, j = polyCorners - 1; i < polyCorners; j = i++) {
+                oddNodes ^= crossesEdge(i, j, latitude, longitudeNorm);
             }
         }
         return oddNodes;
     }
 
+    @Override
+    public Envelope getEnvelope() {
+        if (needNormalize) {
+            return new Envelope(-180, 180, minLatitude, maxLatitude);
+        }
+        return new Envelope(minLongitude, maxLongitude, minLatitude, maxLatitude);
+    }
+
     @Override
     public double calculateArea() {
         JtsShapeFactory jtsShapeFactory = new JtsSpatialContextFactory().newSpatialContext().getShapeFactory();
         ShapeFactory.PolygonBuilder polygonBuilder = jtsShapeFactory.polygon();
-        for (Coordinate coordinate : coordinates) {
-            polygonBuilder.pointXY(coordinate.getLon(), coordinate.getLat());
+        for (int i = 0; i < latitudes.length; i++) {
+            polygonBuilder.pointXY(longitudes[i], latitudes[i]);
         }
         return polygonBuilder.build().getArea(SpatialContext.GEO) * DEG_TO_KM * DEG_TO_KM;
     }
@@ -128,10 +211,10 @@ public class GeofencePolygon extends GeofenceGeometry {
     public String toWkt() {
         StringBuilder buf = new StringBuilder();
         buf.append("POLYGON ((");
-        for (Coordinate coordinate : coordinates) {
-            buf.append(coordinate.getLat());
+        for (int i = 0; i < latitudes.length; i++) {
+            buf.append(latitudes[i]);
             buf.append(" ");
-            buf.append(coordinate.getLon());
+            buf.append(longitudes[i]);
             buf.append(", ");
         }
         return buf.substring(0, buf.length() - 2) + "))";
@@ -139,12 +222,6 @@ public class GeofencePolygon extends GeofenceGeometry {
 
     @Override
     public void fromWkt(String wkt) throws ParseException {
-        if (coordinates == null) {
-            coordinates = new ArrayList<>();
-        } else {
-            coordinates.clear();
-        }
-
         if (!wkt.startsWith("POLYGON")) {
             throw new ParseException("Mismatch geometry type", 0);
         }
@@ -157,25 +234,27 @@ public class GeofencePolygon extends GeofenceGeometry {
             throw new ParseException("Not valid content", 0);
         }
 
-        for (String commaToken : commaTokens) {
-            String[] tokens = commaToken.trim().split("\\s");
+        double[] parsedLatitudes = new double[commaTokens.length];
+        double[] parsedLongitudes = new double[commaTokens.length];
+        for (int i = 0; i < commaTokens.length; i++) {
+            String[] tokens = commaTokens[i].trim().split("\\s");
             if (tokens.length != 2) {
-                throw new ParseException("Here must be two coordinates: " + commaToken, 0);
+                throw new ParseException("Here must be two coordinates: " + commaTokens[i], 0);
             }
-            Coordinate coordinate = new Coordinate();
             try {
-                coordinate.setLat(Double.parseDouble(tokens[0]));
+                parsedLatitudes[i] = Double.parseDouble(tokens[0]);
             } catch (NumberFormatException e) {
                 throw new ParseException(tokens[0] + " is not a double", 0);
             }
             try {
-                coordinate.setLon(Double.parseDouble(tokens[1]));
+                parsedLongitudes[i] = Double.parseDouble(tokens[1]);
             } catch (NumberFormatException e) {
                 throw new ParseException(tokens[1] + " is not a double", 0);
             }
-            coordinates.add(coordinate);
         }
 
+        latitudes = parsedLatitudes;
+        longitudes = parsedLongitudes;
         preCalculate();
     }
 
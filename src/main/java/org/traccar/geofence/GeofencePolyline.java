@@ -17,35 +17,117 @@
 package org.traccar.geofence;
 
 import java.text.ParseException;
-import java.util.ArrayList;
 
+import org.locationtech.jts.geom.Envelope;
 import org.traccar.helper.DistanceCalculator;
 
 public class GeofencePolyline extends GeofenceGeometry {
 
-    private ArrayList<Coordinate> coordinates;
+    /**
+     * Distance of one radian of arc, same units as {@link #DEGREE_DISTANCE}.
+     */
+    private static final double RADIAN_DISTANCE = Math.toDegrees(DEGREE_DISTANCE);
+    private static final int INDEX_MIN_SEGMENTS = 16;
+    private static final int INDEX_SEGMENTS_PER_BUCKET = 2;
+
+    private double[] latitudes;
+    private double[] longitudes;
     private double distance;
 
+    private Corridor corridor;
+
     public GeofencePolyline() {
     }
 
     public GeofencePolyline(String wkt, double distance) throws ParseException {
-        fromWkt(wkt);
         this.distance = distance;
+        fromWkt(wkt);
+    }
+
+    private static double normalizeDelta(double delta) {
+        if (delta > 180) {
+            return delta - 360;
+        } else if (delta < -180) {
+            return delta + 360;
+        }
+        return delta;
+    }
+
+    private double projectedDistance(int segment, double latitude, double longitude) {
+        double scaleX = Math.cos(Math.toRadians(latitude)) * DEGREE_DISTANCE;
+        double ax = normalizeDelta(longitudes[segment] - longitude) * scaleX;
+        double ay = (latitudes[segment] - latitude) * DEGREE_DISTANCE;
+        double dx = normalizeDelta(longitudes[segment + 1] - longitude) * scaleX - ax;
+        double dy = (latitudes[segment + 1] - latitude) * DEGREE_DISTANCE - ay;
+        double length = dx * dx + dy * dy;
+        double t = length > 0 ? Math.max(0, Math.min(1, -(ax * dx + ay * dy) / length)) : 0;
+        return Math.hypot(ax + t * dx, ay + t * dy);
     }
 
     @Override
     public boolean containsPoint(double latitude, double longitude) {
-        for (int i = 1; i < coordinates.size(); i++) {
-            if (DistanceCalculator.distanceToLine(
-                    latitude, longitude, coordinates.get(i - 1).getLat(), coordinates.get(i - 1).getLon(),
-                    coordinates.get(i).getLat(), coordinates.get(i).getLon()) <= distance) {
-                return true;
+        Corridor corridor = this.corridor;
+        if (!corridor.envelope.contains(longitude, latitude)) {
+            return false;
+        }
+        if (corridor.bucketSegments != null) {
+            int bucket = corridor.getBucket(corridor.indexLatitude ? latitude : longitude);
+            for (int k = corridor.bucketOffsets[bucket]; k < corridor.bucketOffsets[bucket + 1]; k++) {
+                if (checkSegment(corridor, corridor.bucketSegments[k], latitude, longitude)) {
+                    return true;
+                }
+            }
+        } else {
+            for (int i = 0; i < corridor.segments.length; i++) {
+                if (checkSegment(corridor, i, latitude, longitude)) {
+                    return true;
+                }
             }
         }
         return false;
     }
 
+    private boolean checkSegment(Corridor corridor, int segment, double latitude, double longitude) {
+        return corridor.segments[segment].contains(longitude, latitude)
+                && projectedDistance(segment, latitude, longitude) <= corridor.allowances[segment]
+                && DistanceCalculator.distanceToLine(
+                        latitude, longitude, latitudes[segment], longitudes[segment],
+                        latitudes[segment + 1], longitudes[segment + 1]) <= distance;
+    }
+
+    private void compile() {
+        int count = latitudes.length - 1;
+        Envelope[] segments = new Envelope[count];
+        double[] allowances = new double[count];
+        Envelope envelope = new Envelope();
+        boolean wrapped = false;
+        for (int i = 0; i < count; i++) {
+            double length = DistanceCalculator.distance(
+                    latitudes[i], longitudes[i], latitudes[i + 1], longitudes[i + 1]);
+            double maxLatitude = Math.min(Math.max(Math.abs(latitudes[i]), Math.abs(latitudes[i + 1])), 89);
+            double bulge = length * length / (8 * RADIAN_DISTANCE) * Math.tan(Math.toRadians(maxLatitude));
+            Envelope segment;
+            if (Math.abs(longitudes[i + 1] - longitudes[i]) > 180) {
+                segment = new Envelope(-180, 180, latitudes[i], latitudes[i + 1]);
+            } else {
+                segment = new Envelope(longitudes[i], longitudes[i + 1], latitudes[i], latitudes[i + 1]);
+            }
+            segments[i] = expandEnvelope(segment, distance + bulge);
+            allowances[i] = (distance + bulge) * ENVELOPE_MARGIN;
+            wrapped |= segments[i].getWidth() >= 360;
+            envelope.expandToInclude(segments[i]);
+        }
+
+        double midLatitude = Math.toRadians((envelope.getMinY() + envelope.getMaxY()) / 2);
+        boolean indexLatitude = wrapped || envelope.getHeight() >= envelope.getWidth() * Math.cos(midLatitude);
+        corridor = new Corridor(envelope, segments, allowances, indexLatitude);
+    }
+
+    @Override
+    public Envelope getEnvelope() {
+        return new Envelope(corridor.envelope);
+    }
+
     @Override
     public double calculateArea() {
         return 0;
@@ -55,10 +137,10 @@ public class GeofencePolyline extends GeofenceGeometry {
     public String toWkt() {
         StringBuilder buf = new StringBuilder();
         buf.append("LINESTRING (");
-        for (Coordinate coordinate : coordinates) {
-            buf.append(String.valueOf(coordinate.getLat()));
+        for (int i = 0; i < latitudes.length; i++) {
+            buf.append(String.valueOf(latitudes[i]));
             buf.append(" ");
-            buf.append(String.valueOf(coordinate.getLon()));
+            buf.append(String.valueOf(longitudes[i]));
             buf.append(", ");
         }
         return buf.substring(0, buf.length() - 2) + ")";
@@ -66,12 +148,6 @@ public class GeofencePolyline extends GeofenceGeometry {
 
     @Override
     public void fromWkt(String wkt) throws ParseException {
-        if (coordinates == null) {
-            coordinates = new ArrayList<>();
-        } else {
-            coordinates.clear();
-        }
-
         if (!wkt.startsWith("LINESTRING")) {
             throw new ParseException("Mismatch geometry type", 0);
         }
@@ -84,29 +160,103 @@ public class GeofencePolyline extends GeofenceGeometry {
             throw new ParseException("Not valid content", 0);
         }
 
-        for (String commaToken : commaTokens) {
-            String[] tokens = commaToken.trim().split("\\s");
+        double[] parsedLatitudes = new double[commaTokens.length];
+        double[] parsedLongitudes = new double[commaTokens.length];
+        for (int i = 0; i < commaTokens.length; i++) {
+            String[] tokens = commaTokens[i].trim().split("\\s");
             if (tokens.length != 2) {
-                throw new ParseException("Here must be two coordinates: " + commaToken, 0);
+                throw new ParseException("Here must be two coordinates: " + commaTokens[i], 0);
             }
-            Coordinate coordinate = new Coordinate();
             try {
-                coordinate.setLat(Double.parseDouble(tokens[0]));
+                parsedLatitudes[i] = Double.parseDouble(tokens[0]);
             } catch (NumberFormatException e) {
                 throw new ParseException(tokens[0] + " is not a double", 0);
             }
             try {
-                coordinate.setLon(Double.parseDouble(tokens[1]));
+                parsedLongitudes[i] = Double.parseDouble(tokens[1]);
             } catch (NumberFormatException e) {
                 throw new ParseException(tokens[1] + " is not a double", 0);
             }
-            coordinates.add(coordinate);
         }
 
+        latitudes = parsedLatitudes;
+        longitudes = parsedLongitudes;
+        compile();
     }
 
     public void setDistance(double distance) {
         this.distance = distance;
+        if (latitudes != null) {
+            compile();
+        }
+    }
+
+    private static final class Corridor {
+
+        private final Envelope envelope;
+        private final Envelope[] segments;
+        private final double[] allowances;
+        private final boolean indexLatitude;
+
+        private int bucketCount;
+        private double bucketMin;
+        private double bucketWidth;
+        private int[] bucketOffsets;
+        private int[] bucketSegments;
+
+        private Corridor(Envelope envelope, Envelope[] segments, double[] allowances, boolean indexLatitude) {
+            this.envelope = envelope;
+            this.segments = segments;
+            this.allowances = allowances;
+            this.indexLatitude = indexLatitude;
+            if (segments.length >= INDEX_MIN_SEGMENTS) {
+                buildIndex();
+            }
+        }
+
+        private double getMin(Envelope envelope) {
+            return indexLatitude ? envelope.getMinY() : envelope.getMinX();
+        }
+
+        private double getMax(Envelope envelope) {
+            return indexLatitude ? envelope.getMaxY() : envelope.getMaxX();
+        }
+
+        private int getBucket(double value) {
+            int bucket = (int) ((value - bucketMin) / bucketWidth);
+            return Math.max(0, Math.min(bucket, bucketCount - 1));
+        }
+
+        private void buildIndex() {
+            bucketCount = segments.length / INDEX_SEGMENTS_PER_BUCKET;
+            bucketMin = getMin(envelope);
+            bucketWidth = (getMax(envelope) - bucketMin) / bucketCount;
+            if (bucketWidth <= 0) {
+                return;
+            }
+
+            int[] counts = new int[bucketCount + 1];
+            for (Envelope segment : segments) {
+                for (int bucket = getBucket(getMin(segment)); bucket <= getBucket(getMax(segment)); bucket++) {
+                    counts[bucket + 1] += 1;
+                }
+            }
+            for (int bucket = 0; bucket < bucketCount; bucket++) {
+                counts[bucket + 1] += counts[bucket];
+            }
+
+            int[] offsets = counts.clone();
+            int[] indexed = new int[counts[bucketCount]];
+            for (int i = 0; i < segments.length; i++) {
+                for (int bucket = getBucket(getMin(segments[i])); bucket <= getBucket(getMax(segments[i])); bucket++) {
+                    indexed[offsets[bucket]++] = i;
+                }
+            }
+
+            bucketOffsets = counts;
+            bucketSegments = indexed;
+        }
+
     }
 
 }
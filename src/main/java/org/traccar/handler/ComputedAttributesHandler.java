@@ -18,17 +18,18 @@ package org.traccar.handler;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.Arrays;
+import java.lang.reflect.Modifier;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.netty.channel.ChannelHandler;
+import org.apache.commons.jexl2.Expression;
+import org.apache.commons.jexl2.JexlContext;
 import org.apache.commons.jexl2.JexlEngine;
 import org.apache.commons.jexl2.JexlException;
-import org.apache.commons.jexl2.MapContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.BaseDataHandler;
@@ -47,10 +48,26 @@ public class ComputedAttributesHandler extends BaseDataHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ComputedAttributesHandler.class);
 
+    private static final Map<String, Method> POSITION_GETTERS = new HashMap<>();
+
+    static {
+        for (Method method : Position.class.getMethods()) {
+            if (method.getName().startsWith("get") && method.getName().length() > 3
+                    && method.getParameterTypes().length == 0
+                    && !Modifier.isStatic(method.getModifiers())
+                    && method.getDeclaringClass() != Object.class
+                    && !method.getReturnType().equals(Map.class)) {
+                String name = Character.toLowerCase(method.getName().charAt(3)) + method.getName().substring(4);
+                POSITION_GETTERS.put(name, method);
+            }
+        }
+    }
+
     private final IdentityManager identityManager;
     private final CacheManager cacheManager;
 
     private final JexlEngine engine;
+    private final Map<Long, CompiledExpression> expressions = new ConcurrentHashMap<>();
 
     private final boolean includeDeviceAttributes;
 
@@ -65,36 +82,14 @@ public class ComputedAttributesHandler extends BaseDataHandler {
         includeDeviceAttributes = config.getBoolean(Keys.PROCESSING_COMPUTED_ATTRIBUTES_DEVICE_ATTRIBUTES);
     }
 
-    private MapContext prepareContext(Position position) {
-        MapContext result = new MapContext();
-        if (includeDeviceAttributes) {
-            Device device = identityManager.getById(position.getDeviceId());
-            if (device != null) {
-                for (Object key : device.getAttributes().keySet()) {
-                    result.set((String) key, device.getAttributes().get(key));
-                }
-            }
-        }
-        Set<Method> methods = new HashSet<>(Arrays.asList(position.getClass().getMethods()));
-        methods.removeAll(Arrays.asList(Object.class.getMethods()));
-        for (Method method : methods) {
-            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0) {
-                String name = Character.toLowerCase(method.getName().charAt(3)) + method.getName().substring(4);
-
-                try {
-                    if (!method.getReturnType().equals(Map.class)) {
-                        result.set(name, method.invoke(position));
-                    } else {
-                        for (Object key : ((Map) method.invoke(position)).keySet()) {
-                            result.set((String) key, ((Map) method.invoke(position)).get(key));
-                        }
-                    }
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Attribute reflection error", error);
-                }
-            }
+    private Expression getExpression(Attribute attribute) {
+        String source = attribute.getExpression();
+        CompiledExpression compiled = expressions.get(attribute.getId());
+        if (compiled == null || !compiled.source.equals(source)) {
+            compiled = new CompiledExpression(source, engine.createExpression(source));
+            expressions.put(attribute.getId(), compiled);
         }
-        return result;
+        return compiled.expression;
     }
 
     /**
@@ -102,7 +97,7 @@ public class ComputedAttributesHandler extends BaseDataHandler {
      */
     @Deprecated
     public Object computeAttribute(Attribute attribute, Position position) throws JexlException {
-        return engine.createExpression(attribute.getExpression()).evaluate(prepareContext(position));
+        return getExpression(attribute).evaluate(new PositionContext(position));
     }
 
     @Override
@@ -139,4 +134,74 @@ public class ComputedAttributesHandler extends BaseDataHandler {
         return position;
     }
 
+    private static final class CompiledExpression {
+
+        private final String source;
+        private final Expression expression;
+
+        private CompiledExpression(String source, Expression expression) {
+            this.source = source;
+            this.expression = expression;
+        }
+
+    }
+
+    private final class PositionContext implements JexlContext {
+
+        private final Position position;
+        private final Map<String, Object> variables = new HashMap<>();
+        private Map<String, Object> deviceAttributes;
+
+        private PositionContext(Position position) {
+            this.position = position;
+        }
+
+        private Map<String, Object> getDeviceAttributes() {
+            if (deviceAttributes == null) {
+                deviceAttributes = Collections.emptyMap();
+                if (includeDeviceAttributes) {
+                    Device device = identityManager.getById(position.getDeviceId());
+                    if (device != null) {
+                        deviceAttributes = device.getAttributes();
+                    }
+                }
+            }
+            return deviceAttributes;
+        }
+
+        @Override
+        public Object get(String name) {
+            if (variables.containsKey(name)) {
+                return variables.get(name);
+            }
+            Method getter = POSITION_GETTERS.get(name);
+            if (getter != null) {
+                try {
+                    return getter.invoke(position);
+                } catch (IllegalAccessException | InvocationTargetException error) {
+                    LOGGER.warn("Attribute reflection error", error);
+                    return null;
+                }
+            }
+            if (position.getAttributes().containsKey(name)) {
+                return position.getAttributes().get(name);
+            }
+            return getDeviceAttributes().get(name);
+        }
+
+        @Override
+        public void set(String name, Object value) {
+            variables.put(name, value);
+        }
+
+        @Override
+        public boolean has(String name) {
+            return variables.containsKey(name)
+                    || POSITION_GETTERS.containsKey(name)
+                    || position.getAttributes().containsKey(name)
+                    || getDeviceAttributes().containsKey(name);
+        }
+
+    }
+
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.handler;
+
+import io.netty.channel.ChannelHandler;
+import org.traccar.BaseDataHandler;
+import org.traccar.model.Position;
+import org.traccar.reports.common.DailySummaryManager;
+
+@ChannelHandler.Sharable
+public class DailySummaryHandler extends BaseDataHandler {
+
+    private final DailySummaryManager dailySummaryManager;
+
+    public DailySummaryHandler(DailySummaryManager dailySummaryManager) {
+        this.dailySummaryManager = dailySummaryManager;
+    }
+
+    @Override
+    protected Position handlePosition(Position position) {
+        dailySummaryManager.updatePosition(position);
+        return position;
+    }
+
+}
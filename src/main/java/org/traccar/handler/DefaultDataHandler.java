@@ -16,10 +16,13 @@
 package org.traccar.handler;
 
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.BaseDataHandler;
 import org.traccar.database.DataManager;
+import org.traccar.database.PositionWriter;
+import org.traccar.metrics.MetricsManager;
 import org.traccar.model.Position;
 
 import javax.inject.Inject;
@@ -30,20 +33,38 @@ public class DefaultDataHandler extends BaseDataHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultDataHandler.class);
 
     private final DataManager dataManager;
+    private final PositionWriter positionWriter;
+    private final MetricsManager metricsManager;
 
     @Inject
-    public DefaultDataHandler(DataManager dataManager) {
+    public DefaultDataHandler(DataManager dataManager, PositionWriter positionWriter, MetricsManager metricsManager) {
         this.dataManager = dataManager;
+        this.positionWriter = positionWriter;
+        this.metricsManager = metricsManager;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Position && positionWriter.isEnabled()) {
+            positionWriter.write((Position) msg).thenAccept(
+                    position -> ctx.executor().execute(() -> ctx.fireChannelRead(position)));
+        } else {
+            super.channelRead(ctx, msg);
+        }
     }
 
     @Override
     protected Position handlePosition(Position position) {
 
+        long startTime = System.nanoTime();
+        boolean success = false;
         try {
             dataManager.addObject(position);
+            success = true;
         } catch (Exception error) {
             LOGGER.warn("Failed to store position", error);
         }
+        metricsManager.registerDatabaseWrite(System.nanoTime() - startTime, success);
 
         return position;
     }
@@ -21,6 +21,7 @@ import org.traccar.session.cache.CacheManager;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 public final class GeofenceUtil {
 
@@ -28,13 +29,12 @@ public final class GeofenceUtil {
     }
 
     public static List<Long> getCurrentGeofences(CacheManager cacheManager, Position position) {
-        List<Long> result = new ArrayList<>();
-        for (Geofence geofence : cacheManager.getDeviceObjects(position.getDeviceId(), Geofence.class)) {
-            if (geofence.getGeometry().containsPoint(position.getLatitude(), position.getLongitude())) {
-                result.add(geofence.getId());
-            }
+        Set<Long> geofenceIds = cacheManager.getDeviceObjectIds(position.getDeviceId(), Geofence.class);
+        if (geofenceIds == null || geofenceIds.isEmpty()) {
+            return new ArrayList<>();
         }
-        return result;
+        return cacheManager.getGeofenceIndex().getContaining(
+                position.getLatitude(), position.getLongitude(), geofenceIds::contains);
     }
 
 }
@@ -19,16 +19,26 @@ import org.traccar.model.Position;
 import org.traccar.session.cache.CacheManager;
 import org.traccar.storage.Storage;
 import org.traccar.storage.StorageException;
+import org.traccar.storage.archive.PositionArchive;
 import org.traccar.storage.query.Columns;
 import org.traccar.storage.query.Condition;
 import org.traccar.storage.query.Order;
 import org.traccar.storage.query.Request;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public final class PositionUtil {
 
+    private static final int BATCH_SIZE = 500;
+
     private PositionUtil() {
     }
 
@@ -50,14 +60,117 @@ public final class PositionUtil {
         return distance;
     }
 
-    public static List<Position> getPositions(
-            Storage storage, long deviceId, Date from, Date to) throws StorageException {
-        return storage.getObjects(Position.class, new Request(
+    private static Request getPositionsRequest(long deviceId, Date from, Date to) {
+        return new Request(
                 new Columns.All(),
                 new Condition.And(
                         new Condition.Equals("deviceId", "deviceId", deviceId),
                         new Condition.Between("fixTime", "from", from, "to", to)),
-                new Order("fixTime")));
+                new Order("fixTime"));
+    }
+
+    private static Date getArchivedUntil(Storage storage, long deviceId, Date from) throws StorageException {
+        PositionArchive archive = storage.getArchive();
+        if (archive != null) {
+            Date archivedUntil = archive.getArchivedUntil(deviceId);
+            if (archivedUntil != null && from.before(archivedUntil)) {
+                return archivedUntil;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stream archived part of the range. Rows that are still in the database below the archive boundary, like late
+     * positions or positions that are being archived at the moment, are merged in by time and deduplicated by id.
+     */
+    private static void streamArchived(
+            Storage storage, long deviceId, Date from, Date to, Date archivedUntil, Consumer<Position> consumer)
+            throws StorageException {
+        Date archivedTo = to.before(archivedUntil) ? to : new Date(archivedUntil.getTime() - 1);
+        List<Position> pending = storage.getObjects(Position.class, getPositionsRequest(deviceId, from, archivedTo));
+        Set<Long> pendingIds = pending.stream().map(Position::getId).collect(Collectors.toSet());
+        Set<Long> archivedIds = new HashSet<>();
+        int[] index = new int[1];
+        Consumer<Date> flush = time -> {
+            while (index[0] < pending.size()
+                    && (time == null || pending.get(index[0]).getFixTime().before(time))) {
+                Position position = pending.get(index[0]++);
+                if (!archivedIds.contains(position.getId())) {
+                    consumer.accept(position);
+                }
+            }
+        };
+        storage.getArchive().streamPositions(deviceId, from, archivedTo, position -> {
+            flush.accept(position.getFixTime());
+            if (pendingIds.contains(position.getId())) {
+                archivedIds.add(position.getId());
+            }
+            consumer.accept(position);
+        });
+        flush.accept(null);
+    }
+
+    public static List<Position> getPositions(
+            Storage storage, long deviceId, Date from, Date to) throws StorageException {
+        Date archivedUntil = getArchivedUntil(storage, deviceId, from);
+        if (archivedUntil == null) {
+            return storage.getObjects(Position.class, getPositionsRequest(deviceId, from, to));
+        }
+        List<Position> positions = new ArrayList<>();
+        streamArchived(storage, deviceId, from, to, archivedUntil, positions::add);
+        if (!to.before(archivedUntil)) {
+            positions.addAll(storage.getObjects(Position.class, getPositionsRequest(deviceId, archivedUntil, to)));
+        }
+        return positions;
+    }
+
+    public static void streamPositions(
+            Storage storage, long deviceId, Date from, Date to, Consumer<Position> consumer) throws StorageException {
+        Date archivedUntil = getArchivedUntil(storage, deviceId, from);
+        if (archivedUntil == null) {
+            storage.streamObjects(Position.class, getPositionsRequest(deviceId, from, to), consumer);
+            return;
+        }
+        streamArchived(storage, deviceId, from, to, archivedUntil, consumer);
+        if (!to.before(archivedUntil)) {
+            storage.streamObjects(Position.class, getPositionsRequest(deviceId, archivedUntil, to), consumer);
+        }
+    }
+
+    /**
+     * Load position by id from the database or, if it has already been moved, from the archive.
+     */
+    public static Position getPosition(Storage storage, long positionId) throws StorageException {
+        Position position = storage.getObject(Position.class, new Request(
+                new Columns.All(), new Condition.Equals("id", "id", positionId)));
+        if (position == null && storage.getArchive() != null) {
+            position = storage.getArchive().getPosition(positionId);
+        }
+        return position;
+    }
+
+    /**
+     * Load positions by id in batches. Positions that are no longer in the database are looked up in the archive using
+     * the provided fix times.
+     */
+    public static Map<Long, Position> getPositions(
+            Storage storage, long deviceId, Map<Long, Date> fixTimes) throws StorageException {
+        Map<Long, Position> result = new HashMap<>();
+        List<Long> ids = new ArrayList<>(fixTimes.keySet());
+        for (int i = 0; i < ids.size(); i += BATCH_SIZE) {
+            var batch = ids.subList(i, Math.min(i + BATCH_SIZE, ids.size()));
+            for (Position position : storage.getObjects(Position.class, new Request(
+                    new Columns.All(), new Condition.In("id", "id", batch)))) {
+                result.put(position.getId(), position);
+            }
+        }
+        if (result.size() < fixTimes.size() && storage.getArchive() != null) {
+            Map<Long, Date> missing = new HashMap<>(fixTimes);
+            missing.keySet().removeAll(result.keySet());
+            result.putAll(storage.getArchive().getPositions(deviceId, missing));
+        }
+        return result;
     }
 
 }
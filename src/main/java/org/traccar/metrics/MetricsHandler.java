@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.metrics;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandler;
+import org.traccar.WrapperInboundHandler;
+
+public class MetricsHandler extends WrapperInboundHandler {
+
+    private static final ThreadLocal<long[]> NESTED_TIME = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final Histogram histogram;
+
+    public MetricsHandler(ChannelInboundHandler handler, Histogram histogram) {
+        super(handler);
+        this.histogram = histogram;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        long[] nestedTime = NESTED_TIME.get();
+        long outerTime = nestedTime[0];
+        nestedTime[0] = 0;
+        long startTime = System.nanoTime();
+        try {
+            super.channelRead(ctx, msg);
+        } finally {
+            long totalTime = System.nanoTime() - startTime;
+            histogram.record(totalTime - nestedTime[0]);
+            nestedTime[0] = outerTime + totalTime;
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.traccar.EventLoopGroupFactory;
+import org.traccar.database.DataManager;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+@Singleton
+public class MetricsManager {
+
+    private final DataManager dataManager;
+
+    private final Map<String, Histogram> handlerLatency = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> messagesDecoded = new ConcurrentSkipListMap<>();
+    private final Histogram databaseWriteLatency = new Histogram();
+    private final LongAdder databaseWriteFailures = new LongAdder();
+    private final Map<String, Map<String, LongSupplier>> gauges = new ConcurrentSkipListMap<>();
+
+    @Inject
+    public MetricsManager(DataManager dataManager) {
+        this.dataManager = dataManager;
+    }
+
+    public Histogram getHandlerLatency(String handler) {
+        return handlerLatency.computeIfAbsent(handler, k -> new Histogram());
+    }
+
+    /**
+     * Record a position insert or a batch of inserts. Failed writes are included in the latency histogram and also
+     * counted separately.
+     */
+    public void registerDatabaseWrite(long nanos, boolean success) {
+        databaseWriteLatency.record(nanos);
+        if (!success) {
+            databaseWriteFailures.increment();
+        }
+    }
+
+    public void registerMessageDecoded(String protocol) {
+        messagesDecoded.computeIfAbsent(protocol, k -> new LongAdder()).increment();
+    }
+
+    public void registerGauge(String name, String labels, LongSupplier supplier) {
+        gauges.computeIfAbsent(name, k -> new ConcurrentHashMap<>()).put(labels, supplier);
+    }
+
+    private static long getPendingTasks(EventExecutorGroup group) {
+        long result = 0;
+        if (group != null) {
+            for (EventExecutor executor : group) {
+                if (executor instanceof SingleThreadEventExecutor) {
+                    result += ((SingleThreadEventExecutor) executor).pendingTasks();
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void formatType(StringBuilder result, String name, String type) {
+        result.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void formatValue(StringBuilder result, String name, String labels, Number value) {
+        result.append(name);
+        if (!labels.isEmpty()) {
+            result.append('{').append(labels).append('}');
+        }
+        result.append(' ').append(value).append('\n');
+    }
+
+    public String format() {
+        StringBuilder result = new StringBuilder();
+
+        formatType(result, "traccar_handler_latency_seconds", "histogram");
+        handlerLatency.forEach((handler, histogram) -> histogram.format(
+                result, "traccar_handler_latency_seconds", "handler=\"" + handler + "\""));
+
+        formatType(result, "traccar_messages_decoded_total", "counter");
+        messagesDecoded.forEach((protocol, count) -> formatValue(
+                result, "traccar_messages_decoded_total", "protocol=\"" + protocol + "\"", count.sum()));
+
+        formatType(result, "traccar_database_write_seconds", "histogram");
+        databaseWriteLatency.format(result, "traccar_database_write_seconds", "");
+
+        formatType(result, "traccar_database_write_failures_total", "counter");
+        formatValue(result, "traccar_database_write_failures_total", "", databaseWriteFailures.sum());
+
+        formatType(result, "traccar_executor_pending_tasks", "gauge");
+        formatValue(result, "traccar_executor_pending_tasks", "group=\"worker\"",
+                getPendingTasks(EventLoopGroupFactory.getWorkerGroup()));
+        formatValue(result, "traccar_executor_pending_tasks", "group=\"processing\"",
+                getPendingTasks(EventLoopGroupFactory.getProcessingGroup()));
+
+        if (dataManager.getDataSource() instanceof HikariDataSource) {
+            HikariPoolMXBean pool = ((HikariDataSource) dataManager.getDataSource()).getHikariPoolMXBean();
+            if (pool != null) {
+                formatType(result, "traccar_database_connections", "gauge");
+                formatValue(result, "traccar_database_connections", "state=\"active\"", pool.getActiveConnections());
+                formatValue(result, "traccar_database_connections", "state=\"idle\"", pool.getIdleConnections());
+                formatValue(result, "traccar_database_connections", "state=\"total\"", pool.getTotalConnections());
+                formatValue(result, "traccar_database_connections", "state=\"pending\"",
+                        pool.getThreadsAwaitingConnection());
+            }
+        }
+
+        gauges.forEach((name, values) -> {
+            formatType(result, name, "gauge");
+            values.forEach((labels, supplier) -> formatValue(result, name, labels, supplier.getAsLong()));
+        });
+
+        return result.toString();
+    }
+
+}
@@ -19,8 +19,6 @@ package org.traccar.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import net.fortuna.ical4j.data.CalendarBuilder;
 import net.fortuna.ical4j.data.ParserException;
-import net.fortuna.ical4j.filter.Filter;
-import net.fortuna.ical4j.filter.predicate.PeriodRule;
 import net.fortuna.ical4j.model.DateTime;
 import net.fortuna.ical4j.model.Period;
 import net.fortuna.ical4j.model.component.CalendarComponent;
@@ -29,13 +27,20 @@ import org.traccar.storage.StorageName;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.time.Duration;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @StorageName("tc_calendars")
 public class Calendar extends ExtendedModel {
 
+    private static final long SCHEDULE_WINDOW = TimeUnit.DAYS.toMillis(7);
+    private static final int SCHEDULE_CACHE_SIZE = 8;
+
     private String name;
 
     public String getName() {
@@ -55,6 +60,9 @@ public class Calendar extends ExtendedModel {
     public void setData(byte[] data) throws IOException, ParserException {
         CalendarBuilder builder = new CalendarBuilder();
         calendar = builder.build(new ByteArrayInputStream(data));
+        synchronized (schedules) {
+            schedules.clear();
+        }
         this.data = data.clone();
     }
 
@@ -66,14 +74,90 @@ public class Calendar extends ExtendedModel {
         return calendar;
     }
 
+    /**
+     * Compiled schedules for recently used windows keyed by window start. Windows are aligned, so devices replaying
+     * history and devices reporting current time do not evict each other.
+     */
+    private final Map<Long, Schedule> schedules = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Schedule> eldest) {
+            return size() > SCHEDULE_CACHE_SIZE;
+        }
+    };
+
     public boolean checkMoment(Date date) {
-        if (calendar != null) {
-            Period period = new Period(new DateTime(date), Duration.ZERO);
-            Filter<CalendarComponent> filter = new Filter<>(new PeriodRule<>(period));
-            Collection<CalendarComponent> events = filter.filter(calendar.getComponents(CalendarComponent.VEVENT));
-            return events != null && !events.isEmpty();
+        var source = calendar;
+        if (source != null) {
+            long time = date.getTime();
+            long windowStart = Math.floorDiv(time, SCHEDULE_WINDOW) * SCHEDULE_WINDOW;
+            Schedule schedule;
+            synchronized (schedules) {
+                schedule = schedules.get(windowStart);
+            }
+            if (schedule == null) {
+                schedule = compileSchedule(source, windowStart, windowStart + SCHEDULE_WINDOW);
+                synchronized (schedules) {
+                    if (source == calendar) {
+                        schedules.put(windowStart, schedule);
+                    }
+                }
+            }
+            return schedule.contains(time);
         }
         return false;
     }
 
+    private static Schedule compileSchedule(net.fortuna.ical4j.model.Calendar source, long from, long to) {
+        Period window = new Period(new DateTime(from), new DateTime(to));
+        List<Period> periods = new ArrayList<>();
+        for (CalendarComponent component : source.getComponents(CalendarComponent.VEVENT)) {
+            periods.addAll(component.calculateRecurrenceSet(window));
+        }
+        periods.sort(Comparator.comparing(Period::getStart));
+
+        long[] starts = new long[periods.size()];
+        long[] ends = new long[periods.size()];
+        int count = 0;
+        for (Period period : periods) {
+            long start = period.getStart().getTime();
+            long end = period.getEnd().getTime();
+            if (count > 0 && start <= ends[count - 1]) {
+                ends[count - 1] = Math.max(ends[count - 1], end);
+            } else {
+                starts[count] = start;
+                ends[count] = end;
+                count += 1;
+            }
+        }
+        return new Schedule(starts, ends, count);
+    }
+
+    private static final class Schedule {
+
+        private final long[] starts;
+        private final long[] ends;
+        private final int count;
+
+        private Schedule(long[] starts, long[] ends, int count) {
+            this.starts = starts;
+            this.ends = ends;
+            this.count = count;
+        }
+
+        private boolean contains(long time) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (starts[middle] <= time) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return high >= 0 && time < ends[high];
+        }
+
+    }
+
 }
@@ -25,6 +25,7 @@ import org.traccar.model.Event;
 import org.traccar.model.Geofence;
 import org.traccar.model.Group;
 import org.traccar.model.Maintenance;
+import org.traccar.reports.common.ReportExecutor;
 import org.traccar.reports.common.ReportUtils;
 import org.traccar.reports.model.DeviceReportSection;
 import org.traccar.storage.Storage;
@@ -52,12 +53,15 @@ public class EventsReportProvider {
 
     private final Config config;
     private final ReportUtils reportUtils;
+    private final ReportExecutor reportExecutor;
     private final Storage storage;
 
     @Inject
-    public EventsReportProvider(Config config, ReportUtils reportUtils, Storage storage) {
+    public EventsReportProvider(
+            Config config, ReportUtils reportUtils, ReportExecutor reportExecutor, Storage storage) {
         this.config = config;
         this.reportUtils = reportUtils;
+        this.reportExecutor = reportExecutor;
         this.storage = storage;
     }
 
@@ -75,9 +79,9 @@ public class EventsReportProvider {
             Collection<String> types, Date from, Date to) throws StorageException {
         reportUtils.checkPeriodLimit(from, to);
         ArrayList<Event> result = new ArrayList<>();
-        for (long deviceId: reportUtils.getDeviceList(deviceIds, groupIds)) {
-            Context.getPermissionsManager().checkDevice(userId, deviceId);
-            Collection<Event> events = getEvents(deviceId, from, to);
+        var devices = reportUtils.getDeviceList(userId, deviceIds, groupIds);
+        var results = reportExecutor.execute(devices, deviceId -> getEvents(deviceId, from, to));
+        for (Collection<Event> events : results.values()) {
             boolean all = types.isEmpty() || types.contains(Event.ALL_EVENTS);
             for (Event event : events) {
                 if (all || types.contains(event.getType())) {
@@ -102,9 +106,10 @@ public class EventsReportProvider {
         ArrayList<String> sheetNames = new ArrayList<>();
         HashMap<Long, String> geofenceNames = new HashMap<>();
         HashMap<Long, String> maintenanceNames = new HashMap<>();
-        for (long deviceId: reportUtils.getDeviceList(deviceIds, groupIds)) {
-            Context.getPermissionsManager().checkDevice(userId, deviceId);
-            Collection<Event> events = getEvents(deviceId, from, to);
+        var devices = reportUtils.getDeviceList(userId, deviceIds, groupIds);
+        var results = reportExecutor.execute(devices, deviceId -> getEvents(deviceId, from, to));
+        for (long deviceId: devices) {
+            Collection<Event> events = results.get(deviceId);
             boolean all = types.isEmpty() || types.contains(Event.ALL_EVENTS);
             for (Iterator<Event> iterator = events.iterator(); iterator.hasNext();) {
                 Event event = iterator.next();
@@ -39,6 +39,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.function.Consumer;
 
 public class RouteReportProvider {
 
@@ -53,25 +54,26 @@ public class RouteReportProvider {
         this.storage = storage;
     }
 
-    public Collection<Position> getObjects(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
-            Date from, Date to) throws StorageException {
+    public Collection<Long> checkDevices(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
+            Date from, Date to) {
         reportUtils.checkPeriodLimit(from, to);
-        ArrayList<Position> result = new ArrayList<>();
-        for (long deviceId: reportUtils.getDeviceList(deviceIds, groupIds)) {
-            Context.getPermissionsManager().checkDevice(userId, deviceId);
-            result.addAll(PositionUtil.getPositions(storage, deviceId, from, to));
+        return reportUtils.getDeviceList(userId, deviceIds, groupIds);
+    }
+
+    public void getObjects(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
+            Date from, Date to, Consumer<Position> consumer) throws StorageException {
+        for (long deviceId: checkDevices(userId, deviceIds, groupIds, from, to)) {
+            PositionUtil.streamPositions(storage, deviceId, from, to, consumer);
         }
-        return result;
     }
 
     public void getExcel(OutputStream outputStream,
             long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
             Date from, Date to) throws StorageException, IOException {
-        reportUtils.checkPeriodLimit(from, to);
         ArrayList<DeviceReportSection> devicesRoutes = new ArrayList<>();
         ArrayList<String> sheetNames = new ArrayList<>();
-        for (long deviceId: reportUtils.getDeviceList(deviceIds, groupIds)) {
-            Context.getPermissionsManager().checkDevice(userId, deviceId);
+        for (long deviceId: checkDevices(userId, deviceIds, groupIds, from, to)) {
+            // loaded one device at a time, parallel loading would hold several connections and result sets at once
             var positions = PositionUtil.getPositions(storage, deviceId, from, to);
             DeviceReportSection deviceRoutes = new DeviceReportSection();
             Device device = Context.getIdentityManager().getById(deviceId);
@@ -20,13 +20,13 @@ import org.apache.poi.ss.util.WorkbookUtil;
 import org.traccar.Context;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
-import org.traccar.helper.model.PositionUtil;
 import org.traccar.model.Device;
 import org.traccar.model.Group;
+import org.traccar.reports.common.MotionSegmentManager;
+import org.traccar.reports.common.ReportExecutor;
 import org.traccar.reports.common.ReportUtils;
 import org.traccar.reports.model.DeviceReportSection;
 import org.traccar.reports.model.StopReportItem;
-import org.traccar.storage.Storage;
 import org.traccar.storage.StorageException;
 
 import javax.inject.Inject;
@@ -44,20 +44,28 @@ public class StopsReportProvider {
 
     private final Config config;
     private final ReportUtils reportUtils;
-    private final Storage storage;
+    private final ReportExecutor reportExecutor;
+    private final MotionSegmentManager motionSegmentManager;
 
     @Inject
-    public StopsReportProvider(Config config, ReportUtils reportUtils, Storage storage) {
+    public StopsReportProvider(
+            Config config, ReportUtils reportUtils, ReportExecutor reportExecutor,
+            MotionSegmentManager motionSegmentManager) {
         this.config = config;
         this.reportUtils = reportUtils;
-        this.storage = storage;
+        this.reportExecutor = reportExecutor;
+        this.motionSegmentManager = motionSegmentManager;
     }
 
     private Collection<StopReportItem> detectStops(long deviceId, Date from, Date to) throws StorageException {
         boolean ignoreOdometer = Context.getDeviceManager()
                 .lookupAttributeBoolean(deviceId, "report.ignoreOdometer", false, false, true);
-        return reportUtils.detectTripsAndStops(
-                PositionUtil.getPositions(storage, deviceId, from, to), ignoreOdometer, StopReportItem.class);
+        if (motionSegmentManager.isEnabled()) {
+            var segments = motionSegmentManager.getSegments(deviceId, from, to);
+            return reportUtils.getTripsAndStops(
+                    segments, deviceId, from, to, ignoreOdometer, StopReportItem.class);
+        }
+        return reportUtils.detectTripsAndStops(deviceId, from, to, ignoreOdometer, StopReportItem.class);
     }
 
     public Collection<StopReportItem> getObjects(
@@ -65,9 +73,9 @@ public class StopsReportProvider {
             Date from, Date to) throws StorageException {
         reportUtils.checkPeriodLimit(from, to);
         ArrayList<StopReportItem> result = new ArrayList<>();
-        for (long deviceId: reportUtils.getDeviceList(deviceIds, groupIds)) {
-            Context.getPermissionsManager().checkDevice(userId, deviceId);
-            result.addAll(detectStops(deviceId, from, to));
+        var devices = reportUtils.getDeviceList(userId, deviceIds, groupIds);
+        for (var items : reportExecutor.execute(devices, deviceId -> detectStops(deviceId, from, to)).values()) {
+            result.addAll(items);
         }
         return result;
     }
@@ -78,9 +86,10 @@ public class StopsReportProvider {
         reportUtils.checkPeriodLimit(from, to);
         ArrayList<DeviceReportSection> devicesStops = new ArrayList<>();
         ArrayList<String> sheetNames = new ArrayList<>();
-        for (long deviceId: reportUtils.getDeviceList(deviceIds, groupIds)) {
-            Context.getPermissionsManager().checkDevice(userId, deviceId);
-            Collection<StopReportItem> stops = detectStops(deviceId, from, to);
+        var devices = reportUtils.getDeviceList(userId, deviceIds, groupIds);
+        var results = reportExecutor.execute(devices, deviceId -> detectStops(deviceId, from, to));
+        for (long deviceId: devices) {
+            Collection<StopReportItem> stops = results.get(deviceId);
             DeviceReportSection deviceStops = new DeviceReportSection();
             Device device = Context.getIdentityManager().getById(deviceId);
             deviceStops.setDeviceName(device.getName());
@@ -16,15 +16,18 @@
  */
 package org.traccar.reports;
 
+import com.google.common.annotations.VisibleForTesting;
 import org.jxls.util.JxlsHelper;
-import org.traccar.Context;
 import org.traccar.api.security.PermissionsService;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
+import org.traccar.database.IdentityManager;
 import org.traccar.helper.UnitsConverter;
 import org.traccar.helper.model.PositionUtil;
 import org.traccar.helper.model.UserUtil;
 import org.traccar.model.Position;
+import org.traccar.reports.common.DailySummaryManager;
+import org.traccar.reports.common.ReportExecutor;
 import org.traccar.reports.common.ReportUtils;
 import org.traccar.reports.model.SummaryReportItem;
 import org.traccar.storage.Storage;
@@ -41,115 +44,161 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.function.Consumer;
 
 public class SummaryReportProvider {
 
     private final Config config;
     private final ReportUtils reportUtils;
+    private final ReportExecutor reportExecutor;
     private final PermissionsService permissionsService;
     private final Storage storage;
+    private final DailySummaryManager dailySummaryManager;
+    private final IdentityManager identityManager;
 
     @Inject
     public SummaryReportProvider(
-            Config config, ReportUtils reportUtils, PermissionsService permissionsService, Storage storage) {
+            Config config, ReportUtils reportUtils, ReportExecutor reportExecutor,
+            PermissionsService permissionsService, Storage storage, DailySummaryManager dailySummaryManager,
+            IdentityManager identityManager) {
         this.config = config;
         this.reportUtils = reportUtils;
+        this.reportExecutor = reportExecutor;
         this.permissionsService = permissionsService;
         this.storage = storage;
+        this.dailySummaryManager = dailySummaryManager;
+        this.identityManager = identityManager;
     }
 
-    private SummaryReportItem calculateSummaryResult(long deviceId, Collection<Position> positions) {
+    private SummaryReportItem calculateSummaryResult(
+            long deviceId, Position firstPosition, Position lastPosition, double maxSpeed) {
         SummaryReportItem result = new SummaryReportItem();
         result.setDeviceId(deviceId);
-        result.setDeviceName(Context.getIdentityManager().getById(deviceId).getName());
-        if (positions != null && !positions.isEmpty()) {
-            Position firstPosition = null;
-            Position previousPosition = null;
-            for (Position position : positions) {
-                if (firstPosition == null) {
-                    firstPosition = position;
-                }
-                previousPosition = position;
-                if (position.getSpeed() > result.getMaxSpeed()) {
-                    result.setMaxSpeed(position.getSpeed());
-                }
-            }
-            boolean ignoreOdometer = Context.getDeviceManager()
-                    .lookupAttributeBoolean(deviceId, "report.ignoreOdometer", false, false, true);
-            result.setDistance(PositionUtil.calculateDistance(firstPosition, previousPosition, !ignoreOdometer));
-            result.setSpentFuel(reportUtils.calculateFuel(firstPosition, previousPosition));
-
-            long durationMilliseconds;
-            if (firstPosition.getAttributes().containsKey(Position.KEY_HOURS)
-                    && previousPosition.getAttributes().containsKey(Position.KEY_HOURS)) {
-                durationMilliseconds =
-                        previousPosition.getLong(Position.KEY_HOURS) - firstPosition.getLong(Position.KEY_HOURS);
-                result.setEngineHours(durationMilliseconds);
-            } else {
-                durationMilliseconds =
-                        previousPosition.getFixTime().getTime() - firstPosition.getFixTime().getTime();
-            }
-
-            if (durationMilliseconds > 0) {
-                result.setAverageSpeed(
-                        UnitsConverter.knotsFromMps(result.getDistance() * 1000 / durationMilliseconds));
-            }
+        result.setDeviceName(identityManager.getById(deviceId).getName());
+        result.setMaxSpeed(maxSpeed);
+        boolean ignoreOdometer = identityManager.lookupAttributeBoolean(
+                deviceId, "report.ignoreOdometer", false, false, true);
+        result.setDistance(PositionUtil.calculateDistance(firstPosition, lastPosition, !ignoreOdometer));
+        result.setSpentFuel(reportUtils.calculateFuel(firstPosition, lastPosition));
+
+        long durationMilliseconds;
+        if (firstPosition.getAttributes().containsKey(Position.KEY_HOURS)
+                && lastPosition.getAttributes().containsKey(Position.KEY_HOURS)) {
+            durationMilliseconds =
+                    lastPosition.getLong(Position.KEY_HOURS) - firstPosition.getLong(Position.KEY_HOURS);
+            result.setEngineHours(durationMilliseconds);
+        } else {
+            durationMilliseconds =
+                    lastPosition.getFixTime().getTime() - firstPosition.getFixTime().getTime();
+        }
 
-            if (!ignoreOdometer
-                    && firstPosition.getDouble(Position.KEY_ODOMETER) != 0
-                    && previousPosition.getDouble(Position.KEY_ODOMETER) != 0) {
-                result.setStartOdometer(firstPosition.getDouble(Position.KEY_ODOMETER));
-                result.setEndOdometer(previousPosition.getDouble(Position.KEY_ODOMETER));
-            } else {
-                result.setStartOdometer(firstPosition.getDouble(Position.KEY_TOTAL_DISTANCE));
-                result.setEndOdometer(previousPosition.getDouble(Position.KEY_TOTAL_DISTANCE));
-            }
+        if (durationMilliseconds > 0) {
+            result.setAverageSpeed(
+                    UnitsConverter.knotsFromMps(result.getDistance() * 1000 / durationMilliseconds));
+        }
 
-            result.setStartTime(firstPosition.getFixTime());
-            result.setEndTime(previousPosition.getFixTime());
+        if (!ignoreOdometer
+                && firstPosition.getDouble(Position.KEY_ODOMETER) != 0
+                && lastPosition.getDouble(Position.KEY_ODOMETER) != 0) {
+            result.setStartOdometer(firstPosition.getDouble(Position.KEY_ODOMETER));
+            result.setEndOdometer(lastPosition.getDouble(Position.KEY_ODOMETER));
+        } else {
+            result.setStartOdometer(firstPosition.getDouble(Position.KEY_TOTAL_DISTANCE));
+            result.setEndOdometer(lastPosition.getDouble(Position.KEY_TOTAL_DISTANCE));
         }
+
+        result.setStartTime(firstPosition.getFixTime());
+        result.setEndTime(lastPosition.getFixTime());
         return result;
     }
 
-    private int getDay(long userId, Date date) throws StorageException {
-        Calendar calendar = Calendar.getInstance(UserUtil.getTimezone(
-                permissionsService.getServer(), permissionsService.getUser(userId)));
-        calendar.setTime(date);
-        return calendar.get(Calendar.DAY_OF_MONTH);
-    }
+    /**
+     * Keeps only first, last and maximum speed values of the current period, so the whole history can be summarized
+     * in a single pass over the storage cursor. Daily period boundaries are calculated only when a day changes.
+     */
+    private final class SummaryAggregator implements Consumer<Position> {
+
+        private final long deviceId;
+        private final Calendar calendar;
+        private final List<SummaryReportItem> results = new ArrayList<>();
 
-    private Collection<SummaryReportItem> calculateSummaryResults(
-            long userId, long deviceId, Date from, Date to, boolean daily) throws StorageException {
-
-        var positions = PositionUtil.getPositions(storage, deviceId, from, to);
-        var results = new ArrayList<SummaryReportItem>();
-        if (daily && !positions.isEmpty()) {
-            int startIndex = 0;
-            int startDay = getDay(userId, positions.iterator().next().getFixTime());
-            for (int i = 0; i < positions.size(); i++) {
-                int currentDay = getDay(userId, positions.get(i).getFixTime());
-                if (currentDay != startDay) {
-                    results.add(calculateSummaryResult(deviceId, positions.subList(startIndex, i)));
-                    startIndex = i;
-                    startDay = currentDay;
+        private long periodEnd = Long.MAX_VALUE;
+        private Position firstPosition;
+        private Position lastPosition;
+        private double maxSpeed;
+
+        private SummaryAggregator(long deviceId, TimeZone timeZone) {
+            this.deviceId = deviceId;
+            this.calendar = timeZone != null ? Calendar.getInstance(timeZone) : null;
+        }
+
+        private long getNextDay(Date date) {
+            calendar.setTime(date);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            return calendar.getTimeInMillis();
+        }
+
+        private void complete() {
+            results.add(calculateSummaryResult(deviceId, firstPosition, lastPosition, maxSpeed));
+            firstPosition = null;
+            maxSpeed = 0;
+        }
+
+        @Override
+        public void accept(Position position) {
+            if (firstPosition != null && position.getFixTime().getTime() >= periodEnd) {
+                complete();
+            }
+            if (firstPosition == null) {
+                firstPosition = position;
+                if (calendar != null) {
+                    periodEnd = getNextDay(position.getFixTime());
                 }
             }
-            results.add(calculateSummaryResult(deviceId, positions.subList(startIndex, positions.size())));
-        } else {
-            results.add(calculateSummaryResult(deviceId, positions));
+            lastPosition = position;
+            if (position.getSpeed() > maxSpeed) {
+                maxSpeed = position.getSpeed();
+            }
         }
 
-        return results;
+        private List<SummaryReportItem> finish() {
+            if (firstPosition != null) {
+                complete();
+            }
+            return results;
+        }
+
+    }
+
+    @VisibleForTesting
+    Collection<SummaryReportItem> calculateSummaryResults(
+            long deviceId, Date from, Date to, TimeZone timeZone) throws StorageException {
+        SummaryAggregator aggregator = new SummaryAggregator(deviceId, timeZone);
+        if (dailySummaryManager.isEnabled() && (timeZone == null || DailySummaryManager.isAligned(timeZone))) {
+            dailySummaryManager.streamPositions(deviceId, from, to, aggregator);
+        } else {
+            PositionUtil.streamPositions(storage, deviceId, from, to, aggregator);
+        }
+        return aggregator.finish();
     }
 
     public Collection<SummaryReportItem> getObjects(
             long userId, Collection<Long> deviceIds,
             Collection<Long> groupIds, Date from, Date to, boolean daily) throws StorageException {
         reportUtils.checkPeriodLimit(from, to);
+        TimeZone timeZone = daily
+                ? UserUtil.getTimezone(permissionsService.getServer(), permissionsService.getUser(userId)) : null;
         ArrayList<SummaryReportItem> result = new ArrayList<>();
-        for (long deviceId: reportUtils.getDeviceList(deviceIds, groupIds)) {
-            Context.getPermissionsManager().checkDevice(userId, deviceId);
-            Collection<SummaryReportItem> deviceResults = calculateSummaryResults(userId, deviceId, from, to, daily);
+        var devices = reportUtils.getDeviceList(userId, deviceIds, groupIds);
+        var results = reportExecutor.execute(
+                devices, deviceId -> calculateSummaryResults(deviceId, from, to, timeZone));
+        for (Collection<SummaryReportItem> deviceResults : results.values()) {
             for (SummaryReportItem summaryReport : deviceResults) {
                 if (summaryReport.getStartTime() != null && summaryReport.getEndTime() != null) {
                     result.add(summaryReport);
@@ -20,13 +20,13 @@ import org.apache.poi.ss.util.WorkbookUtil;
 import org.traccar.Context;
 import org.traccar.config.Config;
 import org.traccar.config.Keys;
-import org.traccar.helper.model.PositionUtil;
 import org.traccar.model.Device;
 import org.traccar.model.Group;
+import org.traccar.reports.common.MotionSegmentManager;
+import org.traccar.reports.common.ReportExecutor;
 import org.traccar.reports.common.ReportUtils;
 import org.traccar.reports.model.DeviceReportSection;
 import org.traccar.reports.model.TripReportItem;
-import org.traccar.storage.Storage;
 import org.traccar.storage.StorageException;
 
 import javax.inject.Inject;
@@ -44,30 +44,38 @@ public class TripsReportProvider {
 
     private final Config config;
     private final ReportUtils reportUtils;
-    private final Storage storage;
+    private final ReportExecutor reportExecutor;
+    private final MotionSegmentManager motionSegmentManager;
 
     @Inject
-    public TripsReportProvider(Config config, ReportUtils reportUtils, Storage storage) {
+    public TripsReportProvider(
+            Config config, ReportUtils reportUtils, ReportExecutor reportExecutor,
+            MotionSegmentManager motionSegmentManager) {
         this.config = config;
         this.reportUtils = reportUtils;
-        this.storage = storage;
+        this.reportExecutor = reportExecutor;
+        this.motionSegmentManager = motionSegmentManager;
     }
 
     private Collection<TripReportItem> detectTrips(long deviceId, Date from, Date to) throws StorageException {
         boolean ignoreOdometer = Context.getDeviceManager()
                 .lookupAttributeBoolean(deviceId, "report.ignoreOdometer", false, false, true);
 
-        return reportUtils.detectTripsAndStops(
-                PositionUtil.getPositions(storage, deviceId, from, to), ignoreOdometer, TripReportItem.class);
+        if (motionSegmentManager.isEnabled()) {
+            var segments = motionSegmentManager.getSegments(deviceId, from, to);
+            return reportUtils.getTripsAndStops(
+                    segments, deviceId, from, to, ignoreOdometer, TripReportItem.class);
+        }
+        return reportUtils.detectTripsAndStops(deviceId, from, to, ignoreOdometer, TripReportItem.class);
     }
 
     public Collection<TripReportItem> getObjects(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
                                                         Date from, Date to) throws StorageException {
         reportUtils.checkPeriodLimit(from, to);
         ArrayList<TripReportItem> result = new ArrayList<>();
-        for (long deviceId: reportUtils.getDeviceList(deviceIds, groupIds)) {
-            Context.getPermissionsManager().checkDevice(userId, deviceId);
-            result.addAll(detectTrips(deviceId, from, to));
+        var devices = reportUtils.getDeviceList(userId, deviceIds, groupIds);
+        for (var items : reportExecutor.execute(devices, deviceId -> detectTrips(deviceId, from, to)).values()) {
+            result.addAll(items);
         }
         return result;
     }
@@ -78,9 +86,10 @@ public class TripsReportProvider {
         reportUtils.checkPeriodLimit(from, to);
         ArrayList<DeviceReportSection> devicesTrips = new ArrayList<>();
         ArrayList<String> sheetNames = new ArrayList<>();
-        for (long deviceId: reportUtils.getDeviceList(deviceIds, groupIds)) {
-            Context.getPermissionsManager().checkDevice(userId, deviceId);
-            Collection<TripReportItem> trips = detectTrips(deviceId, from, to);
+        var devices = reportUtils.getDeviceList(userId, deviceIds, groupIds);
+        var results = reportExecutor.execute(devices, deviceId -> detectTrips(deviceId, from, to));
+        for (long deviceId: devices) {
+            Collection<TripReportItem> trips = results.get(deviceId);
             DeviceReportSection deviceTrips = new DeviceReportSection();
             Device device = Context.getIdentityManager().getById(deviceId);
             deviceTrips.setDeviceName(device.getName());
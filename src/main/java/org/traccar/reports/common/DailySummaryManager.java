@@ -0,0 +1,362 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.reports.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.helper.model.PositionUtil;
+import org.traccar.model.DailySummary;
+import org.traccar.model.Position;
+import org.traccar.storage.Storage;
+import org.traccar.storage.StorageException;
+import org.traccar.storage.query.Columns;
+import org.traccar.storage.query.Condition;
+import org.traccar.storage.query.Limit;
+import org.traccar.storage.query.Order;
+import org.traccar.storage.query.Request;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Maintains daily per-device summaries. Days are aligned to UTC midnight. Restoring device state after restart and
+ * rebuilding days that receive late positions is done on a background thread.
+ */
+@Singleton
+public class DailySummaryManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DailySummaryManager.class);
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final Storage storage;
+    private final Executor executor;
+    private final boolean enabled;
+
+    private final Map<Long, DeviceSummary> devices = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> staleDays = new ConcurrentHashMap<>();
+
+    private static final class DeviceSummary {
+
+        private SummaryBuilder builder;
+        private List<Position> pending = new ArrayList<>();
+
+    }
+
+    @Inject
+    public DailySummaryManager(Config config, Storage storage) {
+        this(config, storage, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "summary");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    DailySummaryManager(Config config, Storage storage, Executor executor) {
+        this.storage = storage;
+        this.executor = executor;
+        enabled = config.getBoolean(Keys.REPORT_SUMMARY_MATERIALIZE);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public static boolean isAligned(TimeZone timeZone) {
+        return timeZone.getRawOffset() == 0 && !timeZone.useDaylightTime();
+    }
+
+    private static long getDayStart(long time) {
+        return time - Math.floorMod(time, DAY);
+    }
+
+    private void storeSummary(DailySummary summary) {
+        try {
+            storage.removeObject(DailySummary.class, new Request(
+                    new Condition.And(
+                            new Condition.Equals("deviceId", "deviceId", summary.getDeviceId()),
+                            new Condition.Equals("dayStart", "dayStart", summary.getDayStart()))));
+            summary.setId(storage.addObject(summary, new Request(new Columns.Exclude("id"))));
+        } catch (StorageException e) {
+            LOGGER.warn("Failed to store daily summary", e);
+        }
+    }
+
+    private static void updateSummary(DailySummary summary, Position position) {
+        summary.setEndTime(position.getFixTime());
+        summary.setEndOdometer(position.getDouble(Position.KEY_ODOMETER));
+        summary.setEndTotalDistance(position.getDouble(Position.KEY_TOTAL_DISTANCE));
+        summary.getAttributes().remove(DailySummary.KEY_END_HOURS);
+        if (position.getAttributes().containsKey(Position.KEY_HOURS)) {
+            summary.set(DailySummary.KEY_END_HOURS, position.getLong(Position.KEY_HOURS));
+        }
+        summary.getAttributes().remove(DailySummary.KEY_END_FUEL_LEVEL);
+        if (position.getAttributes().containsKey(Position.KEY_FUEL_LEVEL)) {
+            summary.set(DailySummary.KEY_END_FUEL_LEVEL, position.getDouble(Position.KEY_FUEL_LEVEL));
+        }
+        summary.setMaxSpeed(Math.max(summary.getMaxSpeed(), position.getSpeed()));
+        summary.setPositionCount(summary.getPositionCount() + 1);
+    }
+
+    private static DailySummary createSummary(Position position, long dayStart) {
+        DailySummary summary = new DailySummary();
+        summary.setDeviceId(position.getDeviceId());
+        summary.setDayStart(new Date(dayStart));
+        summary.setStartTime(position.getFixTime());
+        summary.setStartOdometer(position.getDouble(Position.KEY_ODOMETER));
+        summary.setStartTotalDistance(position.getDouble(Position.KEY_TOTAL_DISTANCE));
+        if (position.getAttributes().containsKey(Position.KEY_HOURS)) {
+            summary.set(DailySummary.KEY_START_HOURS, position.getLong(Position.KEY_HOURS));
+        }
+        if (position.getAttributes().containsKey(Position.KEY_FUEL_LEVEL)) {
+            summary.set(DailySummary.KEY_START_FUEL_LEVEL, position.getDouble(Position.KEY_FUEL_LEVEL));
+        }
+        updateSummary(summary, position);
+        return summary;
+    }
+
+    private void scheduleRebuild(long deviceId, long dayStart) {
+        Set<Long> days = staleDays.computeIfAbsent(deviceId, key -> ConcurrentHashMap.newKeySet());
+        if (!days.add(dayStart)) {
+            return;
+        }
+        executor.execute(() -> {
+            days.remove(dayStart);
+            try {
+                rebuild(deviceId, new Date(dayStart), new Date(dayStart + DAY - 1));
+            } catch (StorageException e) {
+                LOGGER.warn("Failed to rebuild daily summary", e);
+            }
+        });
+    }
+
+    private final class SummaryBuilder implements Consumer<Position> {
+
+        private DailySummary summary;
+        private boolean stale;
+
+        @Override
+        public void accept(Position position) {
+            long dayStart = getDayStart(position.getFixTime().getTime());
+            if (summary != null && position.getFixTime().before(summary.getEndTime())) {
+                if (summary.getDayStart().getTime() == dayStart) {
+                    stale = true;
+                } else {
+                    scheduleRebuild(position.getDeviceId(), dayStart);
+                }
+                return;
+            }
+            if (summary != null && summary.getDayStart().getTime() != dayStart) {
+                store();
+            }
+            if (summary == null) {
+                summary = createSummary(position, dayStart);
+            } else {
+                updateSummary(summary, position);
+            }
+        }
+
+        private void store() {
+            if (stale) {
+                scheduleRebuild(summary.getDeviceId(), summary.getDayStart().getTime());
+                stale = false;
+            } else {
+                storeSummary(summary);
+            }
+            summary = null;
+        }
+
+        private void finish() {
+            if (summary != null) {
+                store();
+            }
+        }
+
+    }
+
+    private SummaryBuilder restoreBuilder(long deviceId, Date time) throws StorageException {
+        SummaryBuilder builder = new SummaryBuilder();
+        long dayStart = getDayStart(time.getTime());
+        DailySummary last = storage.getObject(DailySummary.class, new Request(
+                new Columns.Include("dayStart"),
+                new Condition.And(
+                        new Condition.Equals("deviceId", "deviceId", deviceId),
+                        new Condition.Compare("dayStart", "<", "dayStart", new Date(dayStart))),
+                new Order(true, "dayStart"),
+                new Limit(1)));
+        long from = dayStart;
+        if (last != null) {
+            from = last.getDayStart().getTime() + DAY;
+        } else {
+            Position previous = storage.getObject(Position.class, new Request(
+                    new Columns.Include("fixTime"),
+                    new Condition.And(
+                            new Condition.Equals("deviceId", "deviceId", deviceId),
+                            new Condition.Compare("fixTime", "<", "time", new Date(dayStart))),
+                    new Order(true, "fixTime"),
+                    new Limit(1)));
+            if (previous != null) {
+                from = getDayStart(previous.getFixTime().getTime());
+            }
+        }
+        PositionUtil.streamPositions(storage, deviceId, new Date(from), new Date(time.getTime() - 1), builder);
+        return builder;
+    }
+
+    private void restore(long deviceId, DeviceSummary device) {
+        Date time;
+        synchronized (device) {
+            time = device.pending.get(0).getFixTime();
+        }
+        SummaryBuilder builder;
+        try {
+            builder = restoreBuilder(deviceId, time);
+        } catch (StorageException e) {
+            LOGGER.warn("Failed to restore daily summary", e);
+            builder = new SummaryBuilder();
+        }
+        synchronized (device) {
+            device.pending.forEach(builder);
+            device.pending = null;
+            device.builder = builder;
+        }
+    }
+
+    /**
+     * Add live position to the device summary. Until the device state is restored from history positions are kept
+     * in memory. Positions older than the last one make their day stale and the day is rebuilt from storage.
+     */
+    public void updatePosition(Position position) {
+        if (position.getId() == 0) {
+            return;
+        }
+        DeviceSummary device = devices.get(position.getDeviceId());
+        boolean created = false;
+        if (device == null) {
+            device = new DeviceSummary();
+            DeviceSummary existing = devices.putIfAbsent(position.getDeviceId(), device);
+            if (existing != null) {
+                device = existing;
+            } else {
+                created = true;
+            }
+        }
+        synchronized (device) {
+            if (device.pending != null) {
+                device.pending.add(position);
+            } else {
+                device.builder.accept(position);
+            }
+        }
+        if (created) {
+            DeviceSummary restored = device;
+            executor.execute(() -> restore(position.getDeviceId(), restored));
+        }
+    }
+
+    public void rebuild(long deviceId, Date from, Date to) throws StorageException {
+        long start = getDayStart(from.getTime());
+        long end = Math.min(getDayStart(to.getTime()) + DAY, getDayStart(System.currentTimeMillis()));
+        if (start >= end) {
+            return;
+        }
+
+        storage.removeObject(DailySummary.class, new Request(
+                new Condition.And(
+                        new Condition.Equals("deviceId", "deviceId", deviceId),
+                        new Condition.And(
+                                new Condition.Compare("dayStart", ">=", "from", new Date(start)),
+                                new Condition.Compare("dayStart", "<", "to", new Date(end))))));
+
+        SummaryBuilder builder = new SummaryBuilder();
+        PositionUtil.streamPositions(storage, deviceId, new Date(start), new Date(end - 1), builder);
+        builder.finish();
+    }
+
+    private static Position createPosition(DailySummary summary, boolean start) {
+        Position position = new Position();
+        position.setDeviceId(summary.getDeviceId());
+        if (start) {
+            position.setTime(summary.getStartTime());
+            position.setSpeed(summary.getMaxSpeed());
+            position.set(Position.KEY_ODOMETER, summary.getStartOdometer());
+            position.set(Position.KEY_TOTAL_DISTANCE, summary.getStartTotalDistance());
+            if (summary.getAttributes().containsKey(DailySummary.KEY_START_HOURS)) {
+                position.set(Position.KEY_HOURS, summary.getLong(DailySummary.KEY_START_HOURS));
+            }
+            if (summary.getAttributes().containsKey(DailySummary.KEY_START_FUEL_LEVEL)) {
+                position.set(Position.KEY_FUEL_LEVEL, summary.getDouble(DailySummary.KEY_START_FUEL_LEVEL));
+            }
+        } else {
+            position.setTime(summary.getEndTime());
+            position.set(Position.KEY_ODOMETER, summary.getEndOdometer());
+            position.set(Position.KEY_TOTAL_DISTANCE, summary.getEndTotalDistance());
+            if (summary.getAttributes().containsKey(DailySummary.KEY_END_HOURS)) {
+                position.set(Position.KEY_HOURS, summary.getLong(DailySummary.KEY_END_HOURS));
+            }
+            if (summary.getAttributes().containsKey(DailySummary.KEY_END_FUEL_LEVEL)) {
+                position.set(Position.KEY_FUEL_LEVEL, summary.getDouble(DailySummary.KEY_END_FUEL_LEVEL));
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Stream positions equivalent to the device history for summary calculation. Each stored day is represented by
+     * its first and last values with maximum speed attached to the first one. All parts of the period not covered by
+     * stored days, including gaps between them, are read from raw positions.
+     */
+    public void streamPositions(
+            long deviceId, Date from, Date to, Consumer<Position> consumer) throws StorageException {
+        long start = getDayStart(from.getTime() + DAY - 1);
+        List<DailySummary> summaries = storage.getObjects(DailySummary.class, new Request(
+                new Columns.All(),
+                new Condition.And(
+                        new Condition.Equals("deviceId", "deviceId", deviceId),
+                        new Condition.And(
+                                new Condition.Compare("dayStart", ">=", "from", new Date(start)),
+                                new Condition.Compare("dayStart", "<=", "to", new Date(to.getTime() - DAY + 1)))),
+                new Order("dayStart")));
+
+        long uncovered = from.getTime();
+        for (DailySummary summary : summaries) {
+            long dayStart = summary.getDayStart().getTime();
+            if (uncovered < dayStart) {
+                PositionUtil.streamPositions(storage, deviceId, new Date(uncovered), new Date(dayStart - 1), consumer);
+            }
+            consumer.accept(createPosition(summary, true));
+            consumer.accept(createPosition(summary, false));
+            uncovered = dayStart + DAY;
+        }
+        if (uncovered <= to.getTime()) {
+            PositionUtil.streamPositions(storage, deviceId, new Date(uncovered), to, consumer);
+        }
+    }
+
+}
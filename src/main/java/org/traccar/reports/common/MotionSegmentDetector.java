@@ -0,0 +1,143 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.reports.common;
+
+import org.traccar.handler.events.MotionEventHandler;
+import org.traccar.model.Event;
+import org.traccar.model.Position;
+import org.traccar.session.DeviceState;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Single pass trips and stops detection. Keeps one position of look ahead, so positions can be consumed directly
+ * from a storage cursor or as they are received from devices. Completed segments are reported as soon as they are
+ * confirmed, the segment in progress is only reported by {@link #finish()}.
+ */
+public class MotionSegmentDetector implements Consumer<Position> {
+
+    public interface Listener {
+        void onSegment(Position start, Position end, double maxSpeed);
+    }
+
+    private final MotionEventHandler motionHandler;
+    private final TripsConfig tripsConfig;
+    private final boolean trips;
+    private final Listener listener;
+    private final DeviceState deviceState = new DeviceState();
+
+    private Position previous;
+    private Position current;
+
+    private Position eventStart;
+    private double eventMaxSpeed;
+    private Position noEventStart;
+    private double noEventMaxSpeed;
+
+    public MotionSegmentDetector(
+            MotionEventHandler motionHandler, TripsConfig tripsConfig, boolean trips, Listener listener) {
+        this.motionHandler = motionHandler;
+        this.tripsConfig = tripsConfig;
+        this.trips = trips;
+        this.listener = listener;
+    }
+
+    public Position getLast() {
+        return current;
+    }
+
+    private boolean isMoving(Position position, Position next) {
+        if (tripsConfig.getMinimalNoDataDuration() > 0) {
+            boolean beforeGap = next != null
+                    && next.getFixTime().getTime() - position.getFixTime().getTime()
+                    >= tripsConfig.getMinimalNoDataDuration();
+            boolean afterGap = previous != null
+                    && position.getFixTime().getTime() - previous.getFixTime().getTime()
+                    >= tripsConfig.getMinimalNoDataDuration();
+            if (beforeGap || afterGap) {
+                return false;
+            }
+        }
+        if (position.getAttributes().get(Position.KEY_MOTION) instanceof Boolean) {
+            return position.getBoolean(Position.KEY_MOTION);
+        } else {
+            return position.getSpeed() > tripsConfig.getSpeedThreshold();
+        }
+    }
+
+    private void process(Position position, Position next) {
+        boolean moving = isMoving(position, next);
+        if (deviceState.getMotionState() == null) {
+            deviceState.setMotionState(moving);
+            if (trips == moving) {
+                eventStart = position;
+            }
+        }
+
+        Map<Event, Position> event = motionHandler.updateMotionState(deviceState, position, moving);
+        if (eventStart == null
+                && (trips != deviceState.getMotionState() && deviceState.getMotionPosition() != null
+                || trips == deviceState.getMotionState() && event != null)) {
+            eventStart = position;
+            eventMaxSpeed = 0;
+            noEventStart = null;
+        } else if (trips != deviceState.getMotionState() && eventStart != null
+                && deviceState.getMotionPosition() == null && event == null) {
+            eventStart = null;
+        }
+        if (eventStart != null) {
+            eventMaxSpeed = Math.max(eventMaxSpeed, position.getSpeed());
+        }
+        if (noEventStart == null
+                && (trips == deviceState.getMotionState() && deviceState.getMotionPosition() != null
+                || trips != deviceState.getMotionState() && event != null)) {
+            noEventStart = position;
+            noEventMaxSpeed = eventMaxSpeed;
+        } else if (noEventStart != null && deviceState.getMotionPosition() == null && event == null) {
+            noEventStart = null;
+        }
+        if (eventStart != null && noEventStart != null && event != null
+                && trips != deviceState.getMotionState()) {
+            listener.onSegment(eventStart, noEventStart, noEventMaxSpeed);
+            eventStart = null;
+        }
+    }
+
+    @Override
+    public void accept(Position next) {
+        if (current != null) {
+            process(current, next);
+            previous = current;
+        }
+        current = next;
+    }
+
+    public void finish() {
+        if (current != null) {
+            process(current, null);
+            if (eventStart != null && (noEventStart != null || !trips)) {
+                if (noEventStart != null) {
+                    listener.onSegment(eventStart, noEventStart, noEventMaxSpeed);
+                } else {
+                    listener.onSegment(eventStart, current, eventMaxSpeed);
+                }
+            }
+            current = null;
+        }
+    }
+
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.reports.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.handler.events.MotionEventHandler;
+import org.traccar.helper.model.PositionUtil;
+import org.traccar.model.MotionSegment;
+import org.traccar.model.Position;
+import org.traccar.storage.Storage;
+import org.traccar.storage.StorageException;
+import org.traccar.storage.query.Columns;
+import org.traccar.storage.query.Condition;
+import org.traccar.storage.query.Limit;
+import org.traccar.storage.query.Order;
+import org.traccar.storage.query.Request;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Detects and stores trips and stops as positions are received. Periods affected by late positions or by failed
+ * writes are recomputed from storage on a background thread.
+ */
+@Singleton
+public class MotionSegmentManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MotionSegmentManager.class);
+
+    private final Storage storage;
+    private final TripsConfig tripsConfig;
+    private final MotionEventHandler motionHandler;
+    private final Executor executor;
+    private final boolean enabled;
+
+    private final Map<Long, DeviceMotion> devices = new ConcurrentHashMap<>();
+
+    private static final class DeviceMotion {
+
+        private final Object recomputeLock = new Object();
+
+        private DeviceDetectors detectors;
+        private boolean recomputing;
+        private Date recomputeFrom;
+        private Date recomputeTo;
+
+    }
+
+    private static final class DeviceDetectors {
+
+        private final MotionSegmentDetector trips;
+        private final MotionSegmentDetector stops;
+
+        private DeviceDetectors(MotionSegmentDetector trips, MotionSegmentDetector stops) {
+            this.trips = trips;
+            this.stops = stops;
+        }
+
+        private void accept(Position position) {
+            trips.accept(position);
+            stops.accept(position);
+        }
+
+    }
+
+    @Inject
+    public MotionSegmentManager(
+            Config config, Storage storage, TripsConfig tripsConfig, MotionEventHandler motionHandler) {
+        this(config, storage, tripsConfig, motionHandler, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "motion");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    MotionSegmentManager(
+            Config config, Storage storage, TripsConfig tripsConfig, MotionEventHandler motionHandler,
+            Executor executor) {
+        this.storage = storage;
+        this.tripsConfig = tripsConfig;
+        this.motionHandler = motionHandler;
+        this.executor = executor;
+        enabled = config.getBoolean(Keys.REPORT_TRIP_MATERIALIZE);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private void storeSegment(String type, Position start, Position end, double maxSpeed) {
+        MotionSegment segment = new MotionSegment();
+        segment.setDeviceId(start.getDeviceId());
+        segment.setType(type);
+        segment.setStartPositionId(start.getId());
+        segment.setEndPositionId(end.getId());
+        segment.setStartTime(start.getFixTime());
+        segment.setEndTime(end.getFixTime());
+        segment.setMaxSpeed(maxSpeed);
+        try {
+            segment.setId(storage.addObject(segment, new Request(new Columns.Exclude("id"))));
+        } catch (StorageException e) {
+            LOGGER.warn("Failed to store motion segment", e);
+            scheduleRecompute(start.getDeviceId(), start.getFixTime(), end.getFixTime());
+        }
+    }
+
+    /**
+     * Recompute the period on the background thread. Requests for the same device are merged until the recompute
+     * starts. Requests made while the device is being recomputed are ignored, reports detect missing segments from
+     * positions.
+     */
+    private void scheduleRecompute(long deviceId, Date from, Date to) {
+        DeviceMotion motion = devices.computeIfAbsent(deviceId, key -> new DeviceMotion());
+        synchronized (motion) {
+            if (motion.recomputing) {
+                return;
+            }
+            if (motion.recomputeFrom != null) {
+                if (from.before(motion.recomputeFrom)) {
+                    motion.recomputeFrom = from;
+                }
+                if (to.after(motion.recomputeTo)) {
+                    motion.recomputeTo = to;
+                }
+                return;
+            }
+            motion.recomputeFrom = from;
+            motion.recomputeTo = to;
+        }
+        executor.execute(() -> {
+            Date recomputeFrom;
+            Date recomputeTo;
+            synchronized (motion) {
+                recomputeFrom = motion.recomputeFrom;
+                recomputeTo = motion.recomputeTo;
+                motion.recomputeFrom = null;
+                motion.recomputeTo = null;
+            }
+            try {
+                recompute(deviceId, recomputeFrom, recomputeTo);
+            } catch (StorageException e) {
+                LOGGER.warn("Motion segments recompute failed", e);
+            }
+        });
+    }
+
+    private DeviceDetectors createDetectors() {
+        return new DeviceDetectors(
+                new MotionSegmentDetector(motionHandler, tripsConfig, true,
+                        (start, end, maxSpeed) -> storeSegment(MotionSegment.TYPE_TRIP, start, end, maxSpeed)),
+                new MotionSegmentDetector(motionHandler, tripsConfig, false,
+                        (start, end, maxSpeed) -> storeSegment(MotionSegment.TYPE_STOP, start, end, maxSpeed)));
+    }
+
+    private DeviceDetectors restoreDetectors(long deviceId, Date time) throws StorageException {
+        DeviceDetectors detectors = createDetectors();
+        MotionSegment last = storage.getObject(MotionSegment.class, new Request(
+                new Columns.Include("endTime"),
+                new Condition.And(
+                        new Condition.Equals("deviceId", "deviceId", deviceId),
+                        new Condition.Compare("endTime", "<", "time", time)),
+                new Order(true, "endTime"),
+                new Limit(1)));
+        if (last != null) {
+            PositionUtil.streamPositions(
+                    storage, deviceId, last.getEndTime(), new Date(time.getTime() - 1), detectors::accept);
+        }
+        return detectors;
+    }
+
+    public void updatePosition(Position position) {
+        if (position.getId() == 0) {
+            return;
+        }
+        DeviceMotion motion = devices.computeIfAbsent(position.getDeviceId(), key -> new DeviceMotion());
+        Position last;
+        synchronized (motion) {
+            if (motion.recomputing) {
+                // skipped positions are picked up from storage when detectors are restored after recompute
+                return;
+            }
+            if (motion.detectors == null) {
+                try {
+                    motion.detectors = restoreDetectors(position.getDeviceId(), position.getFixTime());
+                } catch (StorageException e) {
+                    LOGGER.warn("Failed to restore motion state", e);
+                    motion.detectors = createDetectors();
+                }
+            }
+            last = motion.detectors.trips.getLast();
+            if (last == null || !position.getFixTime().before(last.getFixTime())) {
+                motion.detectors.accept(position);
+                return;
+            }
+        }
+        scheduleRecompute(position.getDeviceId(), position.getFixTime(), last.getFixTime());
+    }
+
+    /**
+     * Rebuild stored segments for the period. Live detection for the device is suspended until recompute finishes
+     * and then restored from the recomputed segments.
+     */
+    public void recompute(long deviceId, Date from, Date to) throws StorageException {
+        DeviceMotion motion = devices.computeIfAbsent(deviceId, key -> new DeviceMotion());
+        synchronized (motion.recomputeLock) {
+            synchronized (motion) {
+                motion.recomputing = true;
+                motion.detectors = null;
+            }
+            try {
+                MotionSegment previous = storage.getObject(MotionSegment.class, new Request(
+                        new Columns.Include("endTime"),
+                        new Condition.And(
+                                new Condition.Equals("deviceId", "deviceId", deviceId),
+                                new Condition.Compare("endTime", "<=", "from", from)),
+                        new Order(true, "endTime"),
+                        new Limit(1)));
+                Date start = previous != null ? previous.getEndTime() : from;
+
+                storage.removeObject(MotionSegment.class, new Request(
+                        new Condition.And(
+                                new Condition.Equals("deviceId", "deviceId", deviceId),
+                                new Condition.And(
+                                        new Condition.Compare("startTime", ">=", "from", start),
+                                        new Condition.Compare("endTime", "<=", "to", to)))));
+
+                DeviceDetectors detectors = createDetectors();
+                PositionUtil.streamPositions(storage, deviceId, start, to, detectors::accept);
+            } finally {
+                synchronized (motion) {
+                    motion.recomputing = false;
+                    motion.detectors = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stored trips and stops within the period ordered by start time.
+     */
+    public List<MotionSegment> getSegments(long deviceId, Date from, Date to) throws StorageException {
+        return storage.getObjects(MotionSegment.class, new Request(
+                new Columns.All(),
+                new Condition.And(
+                        new Condition.Equals("deviceId", "deviceId", deviceId),
+                        new Condition.And(
+                                new Condition.Compare("startTime", ">=", "from", from),
+                                new Condition.Compare("endTime", "<=", "to", to))),
+                new Order("startTime")));
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.reports.common;
+
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.storage.StorageException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Singleton
+public class ReportExecutor {
+
+    public interface DeviceTask<T> {
+        T execute(long deviceId) throws StorageException;
+    }
+
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    @Inject
+    public ReportExecutor(Config config) {
+        parallelism = config.getInteger(Keys.REPORT_PARALLELISM);
+        if (parallelism > 1) {
+            AtomicInteger index = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "report-" + index.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            executor = null;
+        }
+    }
+
+    public <T> Map<Long, T> execute(Collection<Long> deviceIds, DeviceTask<T> task) throws StorageException {
+        Map<Long, T> result = new LinkedHashMap<>();
+        if (executor == null || deviceIds.size() <= 1) {
+            for (long deviceId : deviceIds) {
+                result.put(deviceId, task.execute(deviceId));
+            }
+            return result;
+        }
+
+        List<Future<T>> futures = new ArrayList<>(deviceIds.size());
+        for (long deviceId : deviceIds) {
+            futures.add(executor.submit(() -> task.execute(deviceId)));
+        }
+        try {
+            var iterator = futures.iterator();
+            for (long deviceId : deviceIds) {
+                result.put(deviceId, iterator.next().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof StorageException) {
+                throw (StorageException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new StorageException(cause);
+            }
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        return result;
+    }
+
+}
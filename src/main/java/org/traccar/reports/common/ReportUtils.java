@@ -39,13 +39,12 @@ import org.traccar.helper.model.PositionUtil;
 import org.traccar.helper.model.UserUtil;
 import org.traccar.model.BaseModel;
 import org.traccar.model.Driver;
-import org.traccar.model.Event;
+import org.traccar.model.MotionSegment;
 import org.traccar.model.Position;
 import org.traccar.model.User;
 import org.traccar.reports.model.BaseReportItem;
 import org.traccar.reports.model.StopReportItem;
 import org.traccar.reports.model.TripReportItem;
-import org.traccar.session.DeviceState;
 import org.traccar.storage.Storage;
 import org.traccar.storage.StorageException;
 import org.traccar.storage.query.Columns;
@@ -62,6 +61,7 @@ import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
@@ -117,6 +117,14 @@ public class ReportUtils {
         return result;
     }
 
+    public Collection<Long> getDeviceList(long userId, Collection<Long> deviceIds, Collection<Long> groupIds) {
+        Collection<Long> result = getDeviceList(deviceIds, groupIds);
+        for (long deviceId : result) {
+            Context.getPermissionsManager().checkDevice(userId, deviceId);
+        }
+        return result;
+    }
+
     public double calculateFuel(Position firstPosition, Position lastPosition) {
 
         if (firstPosition.getAttributes().get(Position.KEY_FUEL_LEVEL) != null
@@ -181,19 +189,7 @@ public class ReportUtils {
     }
 
     private TripReportItem calculateTrip(
-            ArrayList<Position> positions, int startIndex, int endIndex,
-            boolean ignoreOdometer) throws StorageException {
-
-        Position startTrip = positions.get(startIndex);
-        Position endTrip = positions.get(endIndex);
-
-        double speedMax = 0;
-        for (int i = startIndex; i <= endIndex; i++) {
-            double speed = positions.get(i).getSpeed();
-            if (speed > speedMax) {
-                speedMax = speed;
-            }
-        }
+            Position startTrip, Position endTrip, double speedMax, boolean ignoreOdometer) throws StorageException {
 
         TripReportItem trip = new TripReportItem();
 
@@ -246,11 +242,7 @@ public class ReportUtils {
         return trip;
     }
 
-    private StopReportItem calculateStop(
-            ArrayList<Position> positions, int startIndex, int endIndex, boolean ignoreOdometer) {
-
-        Position startStop = positions.get(startIndex);
-        Position endStop = positions.get(endIndex);
+    private StopReportItem calculateStop(Position startStop, Position endStop, boolean ignoreOdometer) {
 
         StopReportItem stop = new StopReportItem();
 
@@ -295,84 +287,139 @@ public class ReportUtils {
 
     @SuppressWarnings("unchecked")
     private <T extends BaseReportItem> T calculateTripOrStop(
-            ArrayList<Position> positions, int startIndex, int endIndex,
-            boolean ignoreOdometer, Class<T> reportClass) throws StorageException {
+            DetectedSegment segment, boolean ignoreOdometer, Class<T> reportClass) throws StorageException {
 
         if (reportClass.equals(TripReportItem.class)) {
-            return (T) calculateTrip(positions, startIndex, endIndex, ignoreOdometer);
+            return (T) calculateTrip(segment.start, segment.end, segment.maxSpeed, ignoreOdometer);
         } else {
-            return (T) calculateStop(positions, startIndex, endIndex, ignoreOdometer);
+            return (T) calculateStop(segment.start, segment.end, ignoreOdometer);
         }
     }
 
-    private boolean isMoving(ArrayList<Position> positions, int index, TripsConfig tripsConfig) {
-        if (tripsConfig.getMinimalNoDataDuration() > 0) {
-            boolean beforeGap = index < positions.size() - 1
-                    && positions.get(index + 1).getFixTime().getTime() - positions.get(index).getFixTime().getTime()
-                    >= tripsConfig.getMinimalNoDataDuration();
-            boolean afterGap = index > 0
-                    && positions.get(index).getFixTime().getTime() - positions.get(index - 1).getFixTime().getTime()
-                    >= tripsConfig.getMinimalNoDataDuration();
-            if (beforeGap || afterGap) {
-                return false;
-            }
+    private static final class DetectedSegment {
+
+        private final Position start;
+        private final Position end;
+        private final double maxSpeed;
+
+        private DetectedSegment(Position start, Position end, double maxSpeed) {
+            this.start = start;
+            this.end = end;
+            this.maxSpeed = maxSpeed;
         }
-        if (positions.get(index).getAttributes().containsKey(Position.KEY_MOTION)
-                && positions.get(index).getAttributes().get(Position.KEY_MOTION) instanceof Boolean) {
-            return positions.get(index).getBoolean(Position.KEY_MOTION);
-        } else {
-            return positions.get(index).getSpeed() > tripsConfig.getSpeedThreshold();
+
+    }
+
+    private MotionSegmentDetector createDetector(Class<?> reportClass, List<DetectedSegment> segments) {
+        return new MotionSegmentDetector(
+                new MotionEventHandler(identityManager, deviceManager, tripsConfig), tripsConfig,
+                reportClass.equals(TripReportItem.class),
+                (start, end, maxSpeed) -> segments.add(new DetectedSegment(start, end, maxSpeed)));
+    }
+
+    private <T extends BaseReportItem> Collection<T> calculateTripsOrStops(
+            List<DetectedSegment> segments, boolean ignoreOdometer, Class<T> reportClass) throws StorageException {
+        Collection<T> result = new ArrayList<>();
+        for (DetectedSegment segment : segments) {
+            result.add(calculateTripOrStop(segment, ignoreOdometer, reportClass));
         }
+        return result;
     }
 
     public <T extends BaseReportItem> Collection<T> detectTripsAndStops(
             Collection<Position> positionCollection, boolean ignoreOdometer,
             Class<T> reportClass) throws StorageException {
+        List<DetectedSegment> segments = new ArrayList<>();
+        var detector = createDetector(reportClass, segments);
+        positionCollection.forEach(detector);
+        detector.finish();
+        return calculateTripsOrStops(segments, ignoreOdometer, reportClass);
+    }
 
-        Collection<T> result = new ArrayList<>();
+    private void detectSegments(
+            long deviceId, Date from, Date to, Class<?> reportClass,
+            List<DetectedSegment> segments) throws StorageException {
+        var detector = createDetector(reportClass, segments);
+        PositionUtil.streamPositions(storage, deviceId, from, to, detector);
+        detector.finish();
+    }
 
-        ArrayList<Position> positions = new ArrayList<>(positionCollection);
-        if (!positions.isEmpty()) {
-            boolean trips = reportClass.equals(TripReportItem.class);
-            MotionEventHandler motionHandler = new MotionEventHandler(identityManager, deviceManager, tripsConfig);
-            DeviceState deviceState = new DeviceState();
-            deviceState.setMotionState(isMoving(positions, 0, tripsConfig));
-            int startEventIndex = trips == deviceState.getMotionState() ? 0 : -1;
-            int startNoEventIndex = -1;
-            for (int i = 0; i < positions.size(); i++) {
-                Map<Event, Position> event = motionHandler.updateMotionState(deviceState, positions.get(i),
-                        isMoving(positions, i, tripsConfig));
-                if (startEventIndex == -1
-                        && (trips != deviceState.getMotionState() && deviceState.getMotionPosition() != null
-                        || trips == deviceState.getMotionState() && event != null)) {
-                    startEventIndex = i;
-                    startNoEventIndex = -1;
-                } else if (trips != deviceState.getMotionState() && startEventIndex != -1
-                        && deviceState.getMotionPosition() == null && event == null) {
-                    startEventIndex = -1;
-                }
-                if (startNoEventIndex == -1
-                        && (trips == deviceState.getMotionState() && deviceState.getMotionPosition() != null
-                        || trips != deviceState.getMotionState() && event != null)) {
-                    startNoEventIndex = i;
-                } else if (startNoEventIndex != -1 && deviceState.getMotionPosition() == null && event == null) {
-                    startNoEventIndex = -1;
-                }
-                if (startEventIndex != -1 && startNoEventIndex != -1 && event != null
-                        && trips != deviceState.getMotionState()) {
-                    result.add(calculateTripOrStop(
-                            positions, startEventIndex, startNoEventIndex, ignoreOdometer, reportClass));
-                    startEventIndex = -1;
-                }
+    /**
+     * Detect segments in a part of the period that is not covered by stored segments. The range includes the first
+     * position of the following stored segment, so segments ending there are completed, while segments starting
+     * there are left to stored data.
+     */
+    private void detectUncovered(
+            long deviceId, Date from, Date to, Class<?> reportClass,
+            List<DetectedSegment> segments) throws StorageException {
+        List<DetectedSegment> detected = new ArrayList<>();
+        detectSegments(deviceId, from, to, reportClass, detected);
+        for (DetectedSegment segment : detected) {
+            if (segment.start.getFixTime().before(to)) {
+                segments.add(segment);
+            }
+        }
+    }
+
+    public <T extends BaseReportItem> Collection<T> detectTripsAndStops(
+            long deviceId, Date from, Date to, boolean ignoreOdometer,
+            Class<T> reportClass) throws StorageException {
+        List<DetectedSegment> segments = new ArrayList<>();
+        detectSegments(deviceId, from, to, reportClass, segments);
+        return calculateTripsOrStops(segments, ignoreOdometer, reportClass);
+    }
+
+    /**
+     * Build trips or stops from materialized trips and stops ordered by start time. Stored trips and stops alternate
+     * and share boundary positions, so two consecutive segments that do not are separated by a gap. Gaps and parts of
+     * the period before the first and after the last stored segment are detected from positions, which covers
+     * segments still in progress, failed writes and history that was not processed.
+     */
+    public <T extends BaseReportItem> Collection<T> getTripsAndStops(
+            List<MotionSegment> motionSegments, long deviceId, Date from, Date to, boolean ignoreOdometer,
+            Class<T> reportClass) throws StorageException {
+
+        if (motionSegments.isEmpty()) {
+            return detectTripsAndStops(deviceId, from, to, ignoreOdometer, reportClass);
+        }
+
+        String type = reportClass.equals(TripReportItem.class) ? MotionSegment.TYPE_TRIP : MotionSegment.TYPE_STOP;
+
+        Map<Long, Date> fixTimes = new HashMap<>();
+        for (MotionSegment motionSegment : motionSegments) {
+            if (motionSegment.getType().equals(type)) {
+                fixTimes.put(motionSegment.getStartPositionId(), motionSegment.getStartTime());
+                fixTimes.put(motionSegment.getEndPositionId(), motionSegment.getEndTime());
+            }
+        }
+        Map<Long, Position> positions = PositionUtil.getPositions(storage, deviceId, fixTimes);
+
+        List<DetectedSegment> segments = new ArrayList<>();
+
+        Date firstStart = motionSegments.get(0).getStartTime();
+        if (from.before(firstStart)) {
+            detectUncovered(deviceId, from, firstStart, reportClass, segments);
+        }
+
+        MotionSegment previous = null;
+        for (MotionSegment motionSegment : motionSegments) {
+            if (previous != null && (previous.getType().equals(motionSegment.getType())
+                    || previous.getEndPositionId() != motionSegment.getStartPositionId())) {
+                detectUncovered(deviceId, previous.getEndTime(), motionSegment.getStartTime(), reportClass, segments);
             }
-            if (startEventIndex != -1 && (startNoEventIndex != -1 || !trips)) {
-                int endIndex = startNoEventIndex != -1 ? startNoEventIndex : positions.size() - 1;
-                result.add(calculateTripOrStop(
-                        positions, startEventIndex, endIndex, ignoreOdometer, reportClass));
+            if (motionSegment.getType().equals(type)) {
+                Position start = positions.get(motionSegment.getStartPositionId());
+                Position end = positions.get(motionSegment.getEndPositionId());
+                if (start != null && end != null) {
+                    segments.add(new DetectedSegment(start, end, motionSegment.getMaxSpeed()));
+                }
             }
+            previous = motionSegment;
         }
 
-        return result;
+        detectSegments(deviceId, previous.getEndTime(), to, reportClass, segments);
+
+        return calculateTripsOrStops(segments, ignoreOdometer, reportClass);
     }
 
 }
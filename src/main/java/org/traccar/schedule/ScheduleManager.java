@@ -37,9 +37,10 @@ public class ScheduleManager implements LifecycleObject {
 
     @Override
     public void start() {
-        executor = Executors.newSingleThreadScheduledExecutor();
-        List.of(TaskDeviceInactivityCheck.class, TaskWebSocketKeepalive.class, TaskHealthCheck.class)
-                .forEach(task -> injector.getInstance(task).schedule(executor));
+        var tasks = List.of(TaskDeviceInactivityCheck.class, TaskWebSocketKeepalive.class, TaskHealthCheck.class,
+                TaskStatistics.class, TaskDataRetention.class, TaskPositionArchive.class);
+        executor = Executors.newScheduledThreadPool(tasks.size());
+        tasks.forEach(task -> injector.getInstance(task).schedule(executor));
     }
 
     @Override
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.schedule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Event;
+import org.traccar.model.Position;
+import org.traccar.storage.Storage;
+import org.traccar.storage.StorageException;
+
+import javax.inject.Inject;
+import java.util.Date;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class TaskDataRetention implements ScheduleTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskDataRetention.class);
+
+    private static final long PERIOD_HOURS = 24;
+    private static final long PARTITION_AHEAD_DAYS = 45;
+
+    private final Storage storage;
+    private final int retentionDays;
+
+    @Inject
+    public TaskDataRetention(Config config, Storage storage) {
+        this.storage = storage;
+        retentionDays = config.getInteger(Keys.DATABASE_RETENTION_DAYS);
+    }
+
+    @Override
+    public void schedule(ScheduledExecutorService executor) {
+        executor.scheduleAtFixedRate(this, 0, PERIOD_HOURS, TimeUnit.HOURS);
+    }
+
+    @Override
+    public void run() {
+        long currentTime = System.currentTimeMillis();
+        try {
+            Date until = new Date(currentTime + TimeUnit.DAYS.toMillis(PARTITION_AHEAD_DAYS));
+            storage.updatePartitions(Position.class, "fixTime", until);
+            storage.updatePartitions(Event.class, "eventTime", until);
+            if (retentionDays > 0) {
+                Date time = new Date(currentTime - TimeUnit.DAYS.toMillis(retentionDays));
+                storage.removeExpired(Position.class, "fixTime", time);
+                storage.removeExpired(Event.class, "eventTime", time);
+            }
+        } catch (StorageException e) {
+            LOGGER.warn("Data retention error", e);
+        }
+    }
+
+}
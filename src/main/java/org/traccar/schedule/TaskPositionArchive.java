@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.schedule;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.Device;
+import org.traccar.model.Position;
+import org.traccar.storage.Storage;
+import org.traccar.storage.StorageException;
+import org.traccar.storage.archive.PositionArchive;
+import org.traccar.storage.query.Columns;
+import org.traccar.storage.query.Condition;
+import org.traccar.storage.query.Limit;
+import org.traccar.storage.query.Order;
+import org.traccar.storage.query.Request;
+
+import javax.inject.Inject;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class TaskPositionArchive implements ScheduleTask {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskPositionArchive.class);
+
+    private static final long PERIOD_HOURS = 24;
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final Storage storage;
+    private final int archiveDays;
+
+    @Inject
+    public TaskPositionArchive(Config config, Storage storage) {
+        this.storage = storage;
+        archiveDays = config.getInteger(Keys.DATABASE_ARCHIVE_DAYS);
+    }
+
+    @Override
+    public void schedule(ScheduledExecutorService executor) {
+        if (storage.getArchive() != null) {
+            executor.scheduleAtFixedRate(this, 0, PERIOD_HOURS, TimeUnit.HOURS);
+        }
+    }
+
+    private Position getFirstPosition(long deviceId, Date from, Date to) throws StorageException {
+        return storage.getObject(Position.class, new Request(
+                new Columns.Include("fixTime"),
+                new Condition.And(
+                        new Condition.Equals("deviceId", "deviceId", deviceId),
+                        new Condition.And(
+                                new Condition.Compare("fixTime", ">=", "from", from),
+                                new Condition.Compare("fixTime", "<", "to", to))),
+                new Order("fixTime"),
+                new Limit(1)));
+    }
+
+    private void archiveDevice(PositionArchive archive, Device device, long until) throws StorageException {
+        if (device.getPositionId() > 0) {
+            Position last = storage.getObject(Position.class, new Request(
+                    new Columns.Include("fixTime"), new Condition.Equals("id", "id", device.getPositionId())));
+            if (last != null) {
+                until = Math.min(until, PositionArchive.getDayStart(last.getFixTime().getTime()));
+            }
+        }
+
+        Position next = getFirstPosition(device.getId(), new Date(0), new Date(until));
+        while (next != null) {
+            long dayStart = PositionArchive.getDayStart(next.getFixTime().getTime());
+            long dayEnd = Math.min(dayStart + DAY, until);
+            Condition dayCondition = new Condition.And(
+                    new Condition.Equals("deviceId", "deviceId", device.getId()),
+                    new Condition.And(
+                            new Condition.Compare("fixTime", ">=", "from", new Date(dayStart)),
+                            new Condition.Compare("fixTime", "<", "to", new Date(dayEnd))));
+            List<Position> positions = storage.getObjects(Position.class, new Request(
+                    new Columns.All(), dayCondition, new Order("fixTime")));
+            long maxId = positions.stream().mapToLong(Position::getId).max().orElse(0);
+
+            archive.storePositions(device.getId(), positions);
+            archive.updateArchivedUntil(device.getId(), new Date(dayEnd));
+
+            // rows added after the day was read are kept and archived on the next run
+            storage.removeObject(Position.class, new Request(
+                    new Condition.And(dayCondition, new Condition.Compare("id", "<=", "maxId", maxId))));
+
+            next = getFirstPosition(device.getId(), new Date(dayEnd), new Date(until));
+        }
+
+        archive.updateArchivedUntil(device.getId(), new Date(until));
+    }
+
+    @Override
+    public void run() {
+        PositionArchive archive = storage.getArchive();
+        long until = PositionArchive.getDayStart(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(archiveDays));
+        try {
+            for (Device device : storage.getObjects(Device.class, new Request(
+                    new Columns.Include("id", "positionId")))) {
+                try {
+                    archiveDevice(archive, device, until);
+                } catch (StorageException e) {
+                    LOGGER.warn("Position archive error", e);
+                }
+            }
+        } catch (StorageException e) {
+            LOGGER.warn("Position archive error", e);
+        }
+    }
+
+}
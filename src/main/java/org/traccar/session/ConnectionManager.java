@@ -23,6 +23,7 @@ import org.slf4j.LoggerFactory;
 import org.traccar.Context;
 import org.traccar.Main;
 import org.traccar.Protocol;
+import org.traccar.config.Config;
 import org.traccar.config.Keys;
 import org.traccar.handler.events.MotionEventHandler;
 import org.traccar.handler.events.OverspeedEventHandler;
@@ -30,16 +31,17 @@ import org.traccar.model.Device;
 import org.traccar.model.Event;
 import org.traccar.model.Position;
 import org.traccar.session.cache.CacheManager;
+import org.traccar.session.cache.PayloadCache;
 import org.traccar.storage.StorageException;
 
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeUnit;
 
 public class ConnectionManager {
@@ -53,6 +55,7 @@ public class ConnectionManager {
     private final Map<Endpoint, Map<String, DeviceSession>> sessionsByEndpoint = new ConcurrentHashMap<>();
 
     private final CacheManager cacheManager;
+    private final PayloadCache payloadCache;
 
     private final Map<Long, Set<UpdateListener>> listeners = new ConcurrentHashMap<>();
     private final Map<Long, Timeout> timeouts = new ConcurrentHashMap<>();
@@ -60,10 +63,19 @@ public class ConnectionManager {
     private final Timer timer;
 
     public ConnectionManager() {
-        deviceTimeout = Context.getConfig().getLong(Keys.STATUS_TIMEOUT) * 1000;
-        updateDeviceState = Context.getConfig().getBoolean(Keys.STATUS_UPDATE_DEVICE_STATE);
-        timer = Main.getInjector().getInstance(Timer.class);
-        cacheManager = Main.getInjector().getInstance(CacheManager.class);
+        this(
+                Context.getConfig(),
+                Main.getInjector().getInstance(Timer.class),
+                Main.getInjector().getInstance(CacheManager.class),
+                Main.getInjector().getInstance(PayloadCache.class));
+    }
+
+    public ConnectionManager(Config config, Timer timer, CacheManager cacheManager, PayloadCache payloadCache) {
+        deviceTimeout = config.getLong(Keys.STATUS_TIMEOUT) * 1000;
+        updateDeviceState = config.getBoolean(Keys.STATUS_UPDATE_DEVICE_STATE);
+        this.timer = timer;
+        this.cacheManager = cacheManager;
+        this.payloadCache = payloadCache;
     }
 
     public DeviceSession getDeviceSession(long deviceId) {
@@ -235,7 +247,7 @@ public class ConnectionManager {
         return result;
     }
 
-    public synchronized void sendKeepalive() {
+    public void sendKeepalive() {
         for (Set<UpdateListener> userListeners : listeners.values()) {
             for (UpdateListener listener : userListeners) {
                 listener.onKeepalive();
@@ -243,31 +255,35 @@ public class ConnectionManager {
         }
     }
 
-    public synchronized void updateDevice(Device device) {
+    public void updateDevice(Device device) {
+        payloadCache.invalidate(device);
         for (long userId : Context.getPermissionsManager().getDeviceUsers(device.getId())) {
-            if (listeners.containsKey(userId)) {
-                for (UpdateListener listener : listeners.get(userId)) {
+            Set<UpdateListener> userListeners = listeners.get(userId);
+            if (userListeners != null) {
+                for (UpdateListener listener : userListeners) {
                     listener.onUpdateDevice(device);
                 }
             }
         }
     }
 
-    public synchronized void updatePosition(Position position) {
+    public void updatePosition(Position position) {
         long deviceId = position.getDeviceId();
 
         for (long userId : Context.getPermissionsManager().getDeviceUsers(deviceId)) {
-            if (listeners.containsKey(userId)) {
-                for (UpdateListener listener : listeners.get(userId)) {
+            Set<UpdateListener> userListeners = listeners.get(userId);
+            if (userListeners != null) {
+                for (UpdateListener listener : userListeners) {
                     listener.onUpdatePosition(position);
                 }
             }
         }
     }
 
-    public synchronized void updateEvent(long userId, Event event) {
-        if (listeners.containsKey(userId)) {
-            for (UpdateListener listener : listeners.get(userId)) {
+    public void updateEvent(long userId, Event event) {
+        Set<UpdateListener> userListeners = listeners.get(userId);
+        if (userListeners != null) {
+            for (UpdateListener listener : userListeners) {
                 listener.onUpdateEvent(event);
             }
         }
@@ -280,18 +296,21 @@ public class ConnectionManager {
         void onUpdateEvent(Event event);
     }
 
-    public synchronized void addListener(long userId, UpdateListener listener) {
-        if (!listeners.containsKey(userId)) {
-            listeners.put(userId, new HashSet<>());
-        }
-        listeners.get(userId).add(listener);
+    public void addListener(long userId, UpdateListener listener) {
+        listeners.compute(userId, (key, userListeners) -> {
+            if (userListeners == null) {
+                userListeners = new CopyOnWriteArraySet<>();
+            }
+            userListeners.add(listener);
+            return userListeners;
+        });
     }
 
-    public synchronized void removeListener(long userId, UpdateListener listener) {
-        if (!listeners.containsKey(userId)) {
-            listeners.put(userId, new HashSet<>());
-        }
-        listeners.get(userId).remove(listener);
+    public void removeListener(long userId, UpdateListener listener) {
+        listeners.computeIfPresent(userId, (key, userListeners) -> {
+            userListeners.remove(listener);
+            return userListeners.isEmpty() ? null : userListeners;
+        });
     }
 
 }
@@ -15,6 +15,7 @@
  */
 package org.traccar.session.cache;
 
+import org.traccar.geofence.GeofenceIndex;
 import org.traccar.helper.model.GeofenceUtil;
 import org.traccar.model.Attribute;
 import org.traccar.model.BaseModel;
@@ -37,14 +38,17 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.stream.Collectors;
 
 @Singleton
@@ -53,70 +57,62 @@ public class CacheManager {
     private static final Collection<Class<? extends BaseModel>> CLASSES = Arrays.asList(
             Attribute.class, Driver.class, Geofence.class, Maintenance.class, Notification.class);
 
+    private static final int LOCK_STRIPES = 64;
+
     private final Storage storage;
 
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final AtomicLongArray versions = new AtomicLongArray(LOCK_STRIPES);
 
-    private final Map<CacheKey, CacheValue> deviceCache = new HashMap<>();
-    private final Map<Long, Map<Class<? extends BaseModel>, List<Long>>> deviceLinks = new HashMap<>();
-    private final Map<Long, Position> devicePositions = new HashMap<>();
+    private final Map<CacheKey, CacheValue> deviceCache = new ConcurrentHashMap<>();
+    private final Map<Long, Map<Class<? extends BaseModel>, Set<Long>>> deviceLinks = new ConcurrentHashMap<>();
+    private final Map<Long, Position> devicePositions = new ConcurrentHashMap<>();
+    private final GeofenceIndex geofenceIndex = new GeofenceIndex();
 
-    private Server server;
-    private final Map<Long, List<User>> notificationUsers = new HashMap<>();
+    private volatile Server server;
+    private volatile Map<Long, List<User>> notificationUsers = new HashMap<>();
 
     @Inject
     public CacheManager(Storage storage) throws StorageException {
         this.storage = storage;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
         invalidateServer();
         invalidateUsers();
     }
 
     public <T extends BaseModel> T getObject(Class<T> clazz, long id) {
-        try {
-            lock.readLock().lock();
-            var cacheValue = deviceCache.get(new CacheKey(clazz, id));
-            return cacheValue != null ? cacheValue.getValue() : null;
-        } finally {
-            lock.readLock().unlock();
-        }
+        var cacheValue = deviceCache.get(new CacheKey(clazz, id));
+        return cacheValue != null ? cacheValue.getValue() : null;
     }
 
     public <T extends BaseModel> List<T> getDeviceObjects(long deviceId, Class<T> clazz) {
-        try {
-            lock.readLock().lock();
-            return deviceLinks.get(deviceId).get(clazz).stream()
-                    .map(id -> deviceCache.get(new CacheKey(clazz, id)).<T>getValue())
-                    .collect(Collectors.toList());
-        } finally {
-            lock.readLock().unlock();
-        }
+        return deviceLinks.get(deviceId).get(clazz).stream()
+                .map(id -> deviceCache.get(new CacheKey(clazz, id)))
+                .filter(Objects::nonNull)
+                .map(CacheValue::<T>getValue)
+                .collect(Collectors.toList());
+    }
+
+    public Set<Long> getDeviceObjectIds(long deviceId, Class<? extends BaseModel> clazz) {
+        return deviceLinks.get(deviceId).get(clazz);
+    }
+
+    public GeofenceIndex getGeofenceIndex() {
+        return geofenceIndex;
     }
 
     public Position getPosition(long deviceId) {
-        try {
-            lock.readLock().lock();
-            return devicePositions.get(deviceId);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return devicePositions.get(deviceId);
     }
 
     public Server getServer() {
-        try {
-            lock.readLock().lock();
-            return server;
-        } finally {
-            lock.readLock().unlock();
-        }
+        return server;
     }
 
     public List<User> getNotificationUsers(long notificationId) {
-        try {
-            lock.readLock().lock();
-            return notificationUsers.get(notificationId);
-        } finally {
-            lock.readLock().unlock();
-        }
+        return notificationUsers.get(notificationId);
     }
 
     public Driver findDriverByUniqueId(long deviceId, String driverUniqueId) {
@@ -127,36 +123,24 @@ public class CacheManager {
     }
 
     public void addDevice(long deviceId) throws StorageException {
-        try {
-            lock.writeLock().lock();
-            if (!deviceLinks.containsKey(deviceId)) {
-                unsafeAddDevice(deviceId);
-            }
-        } finally {
-            lock.writeLock().unlock();
+        if (!deviceLinks.containsKey(deviceId)) {
+            loadDevice(deviceId, false);
         }
     }
 
     public void removeDevice(long deviceId) {
-        try {
-            lock.writeLock().lock();
+        synchronized (getLock(deviceId)) {
             if (deviceLinks.containsKey(deviceId)) {
                 unsafeRemoveDevice(deviceId);
             }
-        } finally {
-            lock.writeLock().unlock();
         }
     }
 
     public void updatePosition(Position position) {
-        try {
-            lock.writeLock().lock();
-            if (deviceLinks.containsKey(position.getDeviceId())) {
-                devicePositions.put(position.getDeviceId(), position);
-            }
-        } finally {
-            lock.writeLock().unlock();
-        }
+        deviceLinks.computeIfPresent(position.getDeviceId(), (deviceId, links) -> {
+            devicePositions.put(deviceId, position);
+            return links;
+        });
     }
 
     public <T extends BaseModel> void updateOrInvalidate(Class<T> clazz, long id) throws StorageException {
@@ -182,12 +166,11 @@ public class CacheManager {
         if (invalidate) {
             invalidate(object.getClass(), object.getId());
         } else {
-            try {
-                lock.writeLock().lock();
-                deviceCache.get(new CacheKey(object.getClass(), object.getId())).setValue(object);
-            } finally {
-                lock.writeLock().unlock();
-            }
+            deviceCache.computeIfPresent(new CacheKey(object), (key, value) -> {
+                value.setValue(object);
+                updateGeofenceIndex(object);
+                return value;
+            });
 
             if (object instanceof Device) {
                 invalidateDeviceGeofences((Device) object);
@@ -213,77 +196,145 @@ public class CacheManager {
         Map<Long, User> users = new HashMap<>();
         storage.getObjects(User.class, new Request(new Columns.All()))
                 .forEach(user -> users.put(user.getId(), user));
+        Map<Long, List<User>> result = new HashMap<>();
         storage.getPermissions(User.class, Notification.class).forEach(permission -> {
             long notificationId = permission.getPropertyId();
             var user = users.get(permission.getOwnerId());
-            notificationUsers.computeIfAbsent(notificationId, k -> new LinkedList<>()).add(user);
+            result.computeIfAbsent(notificationId, k -> new LinkedList<>()).add(user);
         });
+        notificationUsers = result;
     }
 
-    private void addObject(long deviceId, BaseModel object) {
-        deviceCache.computeIfAbsent(new CacheKey(object), k -> new CacheValue(object)).retain(deviceId);
+    private Object getLock(long deviceId) {
+        return locks[getStripe(deviceId)];
     }
 
-    private void unsafeAddDevice(long deviceId) throws StorageException {
-        Map<Class<? extends BaseModel>, List<Long>> links = new HashMap<>();
+    private static int getStripe(long deviceId) {
+        return Long.hashCode(deviceId) & (LOCK_STRIPES - 1);
+    }
 
+    private static final class DeviceData {
+
+        private final Device device;
+        private final Position position;
+        private final List<BaseModel> objects = new LinkedList<>();
+        private final Map<Class<? extends BaseModel>, Set<Long>> links = new HashMap<>();
+
+        private DeviceData(Device device, Position position) {
+            this.device = device;
+            this.position = position;
+        }
+
+    }
+
+    private DeviceData loadDeviceData(long deviceId) throws StorageException {
         Device device = storage.getObject(Device.class, new Request(
                 new Columns.All(), new Condition.Equals("id", "id", deviceId)));
-        addObject(deviceId, device);
+
+        Position position = null;
+        if (device.getPositionId() > 0) {
+            position = storage.getObject(Position.class, new Request(
+                    new Columns.All(), new Condition.Equals("id", "id", device.getPositionId())));
+        }
+
+        DeviceData data = new DeviceData(device, position);
+        data.objects.add(device);
 
         for (Class<? extends BaseModel> clazz : CLASSES) {
             var objects = storage.getObjects(clazz, new Request(
                     new Columns.All(), new Condition.Permission(Device.class, deviceId, clazz)));
-            links.put(clazz, objects.stream().map(BaseModel::getId).collect(Collectors.toList()));
-            objects.forEach(object -> addObject(deviceId, object));
+            data.links.put(clazz, objects.stream().map(BaseModel::getId)
+                    .collect(Collectors.toCollection(LinkedHashSet::new)));
+            data.objects.addAll(objects);
         }
 
         var users = storage.getObjects(User.class, new Request(
                 new Columns.All(), new Condition.Permission(User.class, Device.class, deviceId)));
-        links.put(User.class, users.stream().map(BaseModel::getId).collect(Collectors.toList()));
+        data.links.put(User.class, users.stream().map(BaseModel::getId)
+                .collect(Collectors.toCollection(LinkedHashSet::new)));
         for (var user : users) {
             var notifications = storage.getObjects(Notification.class, new Request(
                     new Columns.All(), new Condition.Permission(User.class, user.getId(), Notification.class)));
             notifications.stream()
                     .filter(Notification::getAlways)
                     .forEach(object -> {
-                        links.computeIfAbsent(Notification.class, k -> new LinkedList<>()).add(object.getId());
-                        addObject(deviceId, object);
+                        data.links.computeIfAbsent(Notification.class, k -> new LinkedHashSet<>()).add(object.getId());
+                        data.objects.add(object);
                     });
         }
 
-        deviceLinks.put(deviceId, links);
+        return data;
+    }
 
-        if (device.getPositionId() > 0) {
-            devicePositions.put(deviceId, storage.getObject(Position.class, new Request(
-                    new Columns.All(), new Condition.Equals("id", "id", device.getPositionId()))));
+    private void loadDevice(long deviceId, boolean reload) throws StorageException {
+        int stripe = getStripe(deviceId);
+        while (true) {
+            long version = versions.get(stripe);
+            DeviceData data = loadDeviceData(deviceId);
+            synchronized (locks[stripe]) {
+                if (versions.get(stripe) == version) {
+                    if (deviceLinks.containsKey(deviceId) == reload) {
+                        unsafeAddDevice(deviceId, data);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Add or replace device data. Existing entries are updated in place, so readers never observe a partially loaded
+     * device, and only references that are no longer linked are released.
+     */
+    private void unsafeAddDevice(long deviceId, DeviceData data) {
+        for (BaseModel object : data.objects) {
+            deviceCache.compute(new CacheKey(object), (key, value) -> {
+                if (value == null) {
+                    value = new CacheValue(object);
+                } else {
+                    value.setValue(object);
+                }
+                value.retain(deviceId);
+                updateGeofenceIndex(object);
+                return value;
+            });
+        }
+
+        if (data.position != null) {
+            devicePositions.merge(deviceId, data.position, (current, loaded) ->
+                    loaded.getFixTime().after(current.getFixTime()) ? loaded : current);
+        }
+        var previousLinks = deviceLinks.put(deviceId, data.links);
+        if (previousLinks != null) {
+            previousLinks.forEach((clazz, ids) -> {
+                Set<Long> currentIds = data.links.getOrDefault(clazz, Collections.emptySet());
+                ids.stream().filter(id -> !currentIds.contains(id)).forEach(id -> release(deviceId, clazz, id));
+            });
         }
 
-        invalidateDeviceGeofences(device);
+        invalidateDeviceGeofences(data.device);
     }
 
     private void unsafeRemoveDevice(long deviceId) {
         deviceCache.remove(new CacheKey(Device.class, deviceId));
-        deviceLinks.remove(deviceId).forEach((clazz, ids) -> ids.forEach(id -> {
-            var key = new CacheKey(clazz, id);
-            deviceCache.computeIfPresent(key, (k, value) -> {
-                value.release(deviceId);
-                return value.getReferences().size() > 0 ? value : null;
-            });
-        }));
+        deviceLinks.remove(deviceId).forEach((clazz, ids) -> ids.forEach(id -> release(deviceId, clazz, id)));
         devicePositions.remove(deviceId);
     }
 
-    private void invalidate(CacheKey... keys) throws StorageException {
-        try {
-            lock.writeLock().lock();
-            unsafeInvalidate(keys);
-        } finally {
-            lock.writeLock().unlock();
-        }
+    private void release(long deviceId, Class<? extends BaseModel> clazz, long id) {
+        deviceCache.computeIfPresent(new CacheKey(clazz, id), (key, value) -> {
+            value.release(deviceId);
+            if (value.getReferences().size() > 0) {
+                return value;
+            }
+            if (clazz == Geofence.class) {
+                geofenceIndex.remove(id);
+            }
+            return null;
+        });
     }
 
-    private void unsafeInvalidate(CacheKey[] keys) throws StorageException {
+    private void invalidate(CacheKey... keys) throws StorageException {
         boolean invalidateServer = false;
         boolean invalidateUsers = false;
         Set<Long> linkedDevices = new HashSet<>();
@@ -301,8 +352,10 @@ public class CacheManager {
             }
         }
         for (long deviceId : linkedDevices) {
-            unsafeRemoveDevice(deviceId);
-            unsafeAddDevice(deviceId);
+            versions.incrementAndGet(getStripe(deviceId));
+        }
+        for (long deviceId : linkedDevices) {
+            loadDevice(deviceId, true);
         }
         if (invalidateServer) {
             invalidateServer();
@@ -312,6 +365,12 @@ public class CacheManager {
         }
     }
 
+    private void updateGeofenceIndex(BaseModel object) {
+        if (object instanceof Geofence && ((Geofence) object).getGeometry() != null) {
+            geofenceIndex.put(object.getId(), ((Geofence) object).getGeometry());
+        }
+    }
+
     private void invalidateDeviceGeofences(Device device) {
         Position position = getPosition(device.getId());
         if (position != null) {
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.session.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.CacheBuilder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.concurrent.ConcurrentMap;
+
+@Singleton
+public class PayloadCache {
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Payloads keyed by object identity. Keys are weak, so entries go away with the model instances, and model
+     * equality is never used.
+     */
+    private final ConcurrentMap<Object, Payload> payloads =
+            CacheBuilder.newBuilder().weakKeys().<Object, Payload>build().asMap();
+
+    @Inject
+    public PayloadCache(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public String getPayload(Object object) throws JsonProcessingException {
+        Payload payload = payloads.computeIfAbsent(object, k -> new Payload());
+        String value = payload.value;
+        if (value == null) {
+            value = objectMapper.writeValueAsString(object);
+            payload.value = value;
+        }
+        return value;
+    }
+
+    public void invalidate(Object object) {
+        payloads.remove(object);
+    }
+
+    private static final class Payload {
+        private volatile String value;
+    }
+
+}
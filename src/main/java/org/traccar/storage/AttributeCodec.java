@@ -0,0 +1,205 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.traccar.model.Position;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of attribute maps. Well known keys are replaced by dictionary indexes and values are stored
+ * with type tags. Decoded values have the same types as values parsed from JSON.
+ */
+final class AttributeCodec {
+
+    private static final int VERSION = 1;
+
+    private static final int TYPE_NUMBER = 0;
+    private static final int TYPE_DOUBLE = 1;
+    private static final int TYPE_TRUE = 2;
+    private static final int TYPE_FALSE = 3;
+    private static final int TYPE_STRING = 4;
+    private static final int TYPE_JSON = 5;
+
+    /**
+     * Dictionary is stored implicitly in encoded values, so new keys can only be appended to the end.
+     */
+    private static final String[] KEYS;
+
+    private static final Map<String, Integer> KEY_INDEXES = new HashMap<>();
+
+    static {
+        List<String> keys = new ArrayList<>(List.of(
+                Position.KEY_ORIGINAL, Position.KEY_INDEX, Position.KEY_HDOP, Position.KEY_VDOP, Position.KEY_PDOP,
+                Position.KEY_SATELLITES, Position.KEY_SATELLITES_VISIBLE, Position.KEY_RSSI, Position.KEY_GPS,
+                Position.KEY_ROAMING, Position.KEY_EVENT, Position.KEY_ALARM, Position.KEY_STATUS,
+                Position.KEY_ODOMETER, Position.KEY_ODOMETER_SERVICE, Position.KEY_ODOMETER_TRIP, Position.KEY_HOURS,
+                Position.KEY_STEPS, Position.KEY_HEART_RATE, Position.KEY_INPUT, Position.KEY_OUTPUT,
+                Position.KEY_IMAGE, Position.KEY_VIDEO, Position.KEY_AUDIO, Position.KEY_POWER, Position.KEY_BATTERY,
+                Position.KEY_BATTERY_LEVEL, Position.KEY_FUEL_LEVEL, Position.KEY_FUEL_USED,
+                Position.KEY_FUEL_CONSUMPTION, Position.KEY_VERSION_FW, Position.KEY_VERSION_HW, Position.KEY_TYPE,
+                Position.KEY_IGNITION, Position.KEY_FLAGS, Position.KEY_ANTENNA, Position.KEY_CHARGE, Position.KEY_IP,
+                Position.KEY_ARCHIVE, Position.KEY_DISTANCE, Position.KEY_TOTAL_DISTANCE, Position.KEY_RPM,
+                Position.KEY_VIN, Position.KEY_APPROXIMATE, Position.KEY_THROTTLE, Position.KEY_MOTION,
+                Position.KEY_ARMED, Position.KEY_GEOFENCE, Position.KEY_ACCELERATION, Position.KEY_DEVICE_TEMP,
+                Position.KEY_COOLANT_TEMP, Position.KEY_ENGINE_LOAD, Position.KEY_OPERATOR, Position.KEY_COMMAND,
+                Position.KEY_BLOCKED, Position.KEY_DOOR, Position.KEY_AXLE_WEIGHT, Position.KEY_G_SENSOR,
+                Position.KEY_ICCID, Position.KEY_PHONE, Position.KEY_SPEED_LIMIT, Position.KEY_DTCS,
+                Position.KEY_OBD_SPEED, Position.KEY_OBD_ODOMETER, Position.KEY_RESULT, Position.KEY_DRIVER_UNIQUE_ID));
+        for (String prefix : new String[] {
+                Position.PREFIX_TEMP, Position.PREFIX_ADC, Position.PREFIX_IO,
+                Position.PREFIX_COUNT, Position.PREFIX_IN, Position.PREFIX_OUT}) {
+            for (int i = 1; i <= 4; i++) {
+                keys.add(prefix + i);
+            }
+        }
+        KEYS = keys.toArray(new String[0]);
+        for (int i = 0; i < KEYS.length; i++) {
+            KEY_INDEXES.put(KEYS[i], i);
+        }
+    }
+
+    private AttributeCodec() {
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream output, long value) {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long result = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream output, String value) {
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(output, data.length);
+        output.write(data, 0, data.length);
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        byte[] data = new byte[length];
+        buffer.get(data);
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    static byte[] encode(ObjectMapper objectMapper, Map<String, Object> attributes) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(attributes.size() * 6 + 2);
+        output.write(VERSION);
+        writeVarLong(output, attributes.size());
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            Integer keyIndex = KEY_INDEXES.get(entry.getKey());
+            if (keyIndex != null) {
+                writeVarLong(output, (long) keyIndex << 1);
+            } else {
+                byte[] data = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                writeVarLong(output, ((long) data.length << 1) | 1);
+                output.write(data, 0, data.length);
+            }
+            Object value = entry.getValue();
+            if (value instanceof Integer || value instanceof Long) {
+                long number = ((Number) value).longValue();
+                output.write(TYPE_NUMBER);
+                writeVarLong(output, (number << 1) ^ (number >> 63));
+            } else if (value instanceof Double) {
+                output.write(TYPE_DOUBLE);
+                long bits = Double.doubleToRawLongBits((Double) value);
+                for (int i = 56; i >= 0; i -= 8) {
+                    output.write((int) (bits >>> i));
+                }
+            } else if (value instanceof Boolean) {
+                output.write((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+            } else if (value instanceof String) {
+                output.write(TYPE_STRING);
+                writeString(output, (String) value);
+            } else {
+                output.write(TYPE_JSON);
+                writeString(output, objectMapper.writeValueAsString(value));
+            }
+        }
+        return output.toByteArray();
+    }
+
+    static Map<String, Object> decode(ObjectMapper objectMapper, byte[] data) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int version = buffer.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported attributes version " + version);
+        }
+        int count = (int) readVarLong(buffer);
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            long key = readVarLong(buffer);
+            String name;
+            if ((key & 1) == 0) {
+                name = KEYS[(int) (key >>> 1)];
+            } else {
+                name = readString(buffer, (int) (key >>> 1));
+            }
+            int type = buffer.get();
+            switch (type) {
+                case TYPE_NUMBER:
+                    long value = readVarLong(buffer);
+                    long number = (value >>> 1) ^ -(value & 1);
+                    if (number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+                        attributes.put(name, (int) number);
+                    } else {
+                        attributes.put(name, number);
+                    }
+                    break;
+                case TYPE_DOUBLE:
+                    attributes.put(name, buffer.getDouble());
+                    break;
+                case TYPE_TRUE:
+                    attributes.put(name, true);
+                    break;
+                case TYPE_FALSE:
+                    attributes.put(name, false);
+                    break;
+                case TYPE_STRING:
+                    attributes.put(name, readString(buffer, (int) readVarLong(buffer)));
+                    break;
+                case TYPE_JSON:
+                    attributes.put(name, objectMapper.readValue(
+                            readString(buffer, (int) readVarLong(buffer)), Object.class));
+                    break;
+                default:
+                    throw new IOException("Unknown attribute type " + type);
+            }
+        }
+        return attributes;
+    }
+
+}
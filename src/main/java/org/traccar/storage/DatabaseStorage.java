@@ -16,11 +16,17 @@
 package org.traccar.storage;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
 import org.traccar.model.BaseModel;
 import org.traccar.model.Device;
 import org.traccar.model.Group;
 import org.traccar.model.GroupedModel;
 import org.traccar.model.Permission;
+import org.traccar.model.Position;
+import org.traccar.storage.archive.PositionArchive;
 import org.traccar.storage.query.Columns;
 import org.traccar.storage.query.Condition;
 import org.traccar.storage.query.Limit;
@@ -28,29 +34,67 @@ import org.traccar.storage.query.Order;
 import org.traccar.storage.query.Request;
 
 import javax.sql.DataSource;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class DatabaseStorage extends Storage {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseStorage.class);
+
+    private static final Pattern PARTITION_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+
+    private static final String LATEST_POSITIONS =
+            "SELECT positionid FROM tc_devices WHERE positionid IS NOT NULL";
+
     private final DataSource dataSource;
     private final ObjectMapper objectMapper;
+    private final int fetchSize;
+    private final int streamTimeout;
+    private final boolean partitioned;
+    private final boolean binaryAttributes;
+    private final PositionArchive archive;
+
+    private final Map<StatementKey, String> statements = new ConcurrentHashMap<>();
 
-    public DatabaseStorage(DataSource dataSource, ObjectMapper objectMapper) {
+    public DatabaseStorage(Config config, DataSource dataSource, ObjectMapper objectMapper) {
         this.dataSource = dataSource;
         this.objectMapper = objectMapper;
+        fetchSize = config.getInteger(Keys.DATABASE_FETCH_SIZE);
+        streamTimeout = config.getInteger(Keys.DATABASE_STREAM_TIMEOUT);
+        partitioned = config.getBoolean(Keys.DATABASE_PARTITION)
+                && config.getString(Keys.DATABASE_URL).startsWith("jdbc:postgresql:");
+        binaryAttributes = config.getBoolean(Keys.DATABASE_BINARY_ATTRIBUTES);
+        String archivePath = config.getString(Keys.DATABASE_ARCHIVE_PATH);
+        archive = archivePath != null ? new PositionArchive(Paths.get(archivePath), objectMapper) : null;
+    }
+
+    @Override
+    public PositionArchive getArchive() {
+        return archive;
     }
 
     @Override
     public <T> List<T> getObjects(Class<T> clazz, Request request) throws StorageException {
-        StringBuilder query = new StringBuilder("SELECT ");
-        query.append(formatColumns(request.getColumns(), clazz, "get", c -> c));
-        query.append(" FROM ").append(getStorageName(clazz));
+        StringBuilder query = new StringBuilder(formatSelect(clazz, request));
         query.append(formatCondition(request.getCondition()));
         query.append(formatOrder(request.getOrder()));
         query.append(formatLimit(request.getLimit()));
@@ -65,17 +109,28 @@ public class DatabaseStorage extends Storage {
         }
     }
 
+    @Override
+    public <T> void streamObjects(Class<T> clazz, Request request, Consumer<T> consumer) throws StorageException {
+        StringBuilder query = new StringBuilder(formatSelect(clazz, request));
+        query.append(formatCondition(request.getCondition()));
+        query.append(formatOrder(request.getOrder()));
+        query.append(formatLimit(request.getLimit()));
+        try {
+            QueryBuilder builder = QueryBuilder.create(dataSource, objectMapper, query.toString());
+            for (Map.Entry<String, Object> variable : getConditionVariables(request.getCondition()).entrySet()) {
+                builder.setValue(variable.getKey(), variable.getValue());
+            }
+            builder.executeQuery(clazz, fetchSize, streamTimeout, consumer);
+        } catch (SQLException e) {
+            throw new StorageException(e);
+        }
+    }
+
     @Override
     public <T> long addObject(T entity, Request request) throws StorageException {
-        StringBuilder query = new StringBuilder("INSERT INTO ");
-        query.append(getStorageName(entity.getClass()));
-        query.append("(");
-        query.append(formatColumns(request.getColumns(), entity.getClass(), "set", c -> c));
-        query.append(") VALUES (");
-        query.append(formatColumns(request.getColumns(), entity.getClass(), "set", c -> ':' + c));
-        query.append(")");
         try {
-            QueryBuilder builder = QueryBuilder.create(dataSource, objectMapper, query.toString(), true);
+            QueryBuilder builder = QueryBuilder.create(
+                    dataSource, objectMapper, formatInsert(entity.getClass(), request), true);
             builder.setObject(entity);
             return builder.executeUpdate();
         } catch (SQLException e) {
@@ -83,12 +138,27 @@ public class DatabaseStorage extends Storage {
         }
     }
 
+    @Override
+    public <T> List<Long> addObjects(List<T> entities, Request request) throws StorageException {
+        if (entities.isEmpty()) {
+            return new LinkedList<>();
+        }
+        try {
+            QueryBuilder builder = QueryBuilder.create(
+                    dataSource, objectMapper, formatInsert(entities.get(0).getClass(), request), true);
+            for (T entity : entities) {
+                builder.setObject(entity);
+                builder.addBatch();
+            }
+            return builder.executeBatch();
+        } catch (SQLException e) {
+            throw new StorageException(e);
+        }
+    }
+
     @Override
     public <T> void updateObject(T entity, Request request) throws StorageException {
-        StringBuilder query = new StringBuilder("UPDATE ");
-        query.append(getStorageName(entity.getClass()));
-        query.append(" SET ");
-        query.append(formatColumns(request.getColumns(), entity.getClass(), "set", c -> c + " = :" + c));
+        StringBuilder query = new StringBuilder(formatUpdate(entity.getClass(), request));
         query.append(formatCondition(request.getCondition()));
         try {
             QueryBuilder builder = QueryBuilder.create(dataSource, objectMapper, query.toString());
@@ -118,6 +188,174 @@ public class DatabaseStorage extends Storage {
         }
     }
 
+    private static final class Partition {
+
+        private final String name;
+        private final Date upperBound;
+
+        private Partition(String name, Date upperBound) {
+            this.name = name;
+            this.upperBound = upperBound;
+        }
+
+        private boolean isDefault() {
+            return upperBound == null;
+        }
+
+    }
+
+    private List<Partition> getPartitions(Connection connection, String table) throws SQLException {
+        List<Partition> result = new ArrayList<>();
+        try (var statement = connection.prepareStatement(
+                "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i "
+                        + "JOIN pg_class c ON c.oid = i.inhrelid "
+                        + "JOIN pg_class p ON p.oid = i.inhparent WHERE p.relname = ?")) {
+            statement.setString(1, table);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    String bound = resultSet.getString(2);
+                    Matcher matcher = PARTITION_BOUND.matcher(bound);
+                    if (matcher.find()) {
+                        result.add(new Partition(resultSet.getString(1), Timestamp.valueOf(matcher.group(1))));
+                    } else if (bound.equals("DEFAULT")) {
+                        result.add(new Partition(resultSet.getString(1), null));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void executeTransaction(Connection connection, String... statements) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (String query : statements) {
+                statement.execute(query);
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Create a partition for the range. Records that are already in the default partition for this range, for example
+     * positions with future time, are moved to the new partition in the same transaction, otherwise it can't be
+     * attached.
+     */
+    private static void createPartition(
+            Connection connection, String table, String column, String defaultPartition,
+            String partition, String from, String to) throws SQLException {
+        List<String> statements = new ArrayList<>();
+        statements.add("CREATE TABLE " + partition + " (LIKE " + table + " INCLUDING DEFAULTS)");
+        if (defaultPartition != null) {
+            statements.add("WITH moved AS (DELETE FROM " + defaultPartition
+                    + " WHERE " + column + " >= '" + from + "' AND " + column + " < '" + to + "' RETURNING *)"
+                    + " INSERT INTO " + partition + " SELECT * FROM moved");
+        }
+        statements.add("ALTER TABLE " + table + " ATTACH PARTITION " + partition
+                + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        executeTransaction(connection, statements.toArray(new String[0]));
+    }
+
+    @Override
+    public void updatePartitions(Class<?> clazz, String column, Date until) throws StorageException {
+        if (!partitioned) {
+            return;
+        }
+        String table = getStorageName(clazz);
+        try (Connection connection = dataSource.getConnection()) {
+            String defaultPartition = null;
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTime(new Date());
+            for (Partition partition : getPartitions(connection, table)) {
+                if (partition.isDefault()) {
+                    defaultPartition = partition.name;
+                } else if (partition.upperBound.after(calendar.getTime())) {
+                    calendar.setTime(partition.upperBound);
+                }
+            }
+            calendar.set(Calendar.DAY_OF_MONTH, 1);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+
+            SimpleDateFormat nameFormat = new SimpleDateFormat("yyyyMM");
+            SimpleDateFormat boundFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+            while (!calendar.getTime().after(until)) {
+                Date from = calendar.getTime();
+                calendar.add(Calendar.MONTH, 1);
+                String partition = table + "_p" + nameFormat.format(from);
+                try {
+                    createPartition(connection, table, column, defaultPartition, partition,
+                            boundFormat.format(from), boundFormat.format(calendar.getTime()));
+                } catch (SQLException e) {
+                    LOGGER.warn("Failed to create partition " + partition, e);
+                    break;
+                }
+            }
+        } catch (SQLException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    private void removeExpired(String table, String column, Date time, boolean keepLatest) throws SQLException {
+        String query = "DELETE FROM " + table + " WHERE " + column + " < :time";
+        if (keepLatest) {
+            query += " AND id NOT IN (" + LATEST_POSITIONS + ")";
+        }
+        QueryBuilder.create(dataSource, objectMapper, query).setDate("time", time).executeUpdate();
+    }
+
+    /**
+     * Drop expired partition. Latest device positions are moved to the default partition first if requested.
+     */
+    private static void dropPartition(
+            Connection connection, String table, String partition, boolean keepLatest) throws SQLException {
+        if (keepLatest) {
+            executeTransaction(connection,
+                    "ALTER TABLE " + table + " DETACH PARTITION " + partition,
+                    "INSERT INTO " + table + " SELECT * FROM " + partition + " WHERE id IN (" + LATEST_POSITIONS + ")",
+                    "DROP TABLE " + partition);
+        } else {
+            executeTransaction(connection, "DROP TABLE " + partition);
+        }
+    }
+
+    /**
+     * Latest positions of devices are never removed.
+     */
+    @Override
+    public void removeExpired(Class<?> clazz, String column, Date time) throws StorageException {
+        String table = getStorageName(clazz);
+        boolean keepLatest = clazz == Position.class;
+        try {
+            if (partitioned) {
+                try (Connection connection = dataSource.getConnection()) {
+                    for (Partition partition : getPartitions(connection, table)) {
+                        if (partition.isDefault()) {
+                            removeExpired(partition.name, column, time, keepLatest);
+                        } else if (!partition.upperBound.after(time)) {
+                            dropPartition(connection, table, partition.name, keepLatest);
+                        }
+                    }
+                }
+            } else {
+                removeExpired(table, column, time, keepLatest);
+            }
+        } catch (SQLException e) {
+            throw new StorageException(e);
+        }
+        if (archive != null && clazz == Position.class) {
+            archive.removeExpired(time);
+        }
+    }
+
     @Override
     public List<Permission> getPermissions(
             Class<? extends BaseModel> ownerClass, long ownerId,
@@ -190,6 +428,114 @@ public class DatabaseStorage extends Storage {
         return storageName.value();
     }
 
+    private interface StatementFormatter {
+        String format() throws StorageException;
+    }
+
+    private static final class StatementKey {
+
+        private final String operation;
+        private final Class<?> clazz;
+        private final Columns columns;
+
+        private StatementKey(String operation, Class<?> clazz, Columns columns) {
+            this.operation = operation;
+            this.clazz = clazz;
+            this.columns = columns;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            StatementKey statementKey = (StatementKey) o;
+            return operation.equals(statementKey.operation)
+                    && clazz.equals(statementKey.clazz)
+                    && Objects.equals(columns, statementKey.columns);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(operation, clazz, columns);
+        }
+
+    }
+
+    private String getStatement(
+            String operation, Class<?> clazz, Columns columns, StatementFormatter formatter) throws StorageException {
+        StatementKey key = new StatementKey(operation, clazz, columns);
+        String statement = statements.get(key);
+        if (statement == null) {
+            statement = formatter.format();
+            statements.put(key, statement);
+        }
+        return statement;
+    }
+
+    private static boolean hasBinaryAttributes(Class<?> clazz) {
+        return clazz.equals(Position.class);
+    }
+
+    private String formatSelect(Class<?> clazz, Request request) throws StorageException {
+        return getStatement("select", clazz, request.getColumns(), () -> {
+            boolean binary = hasBinaryAttributes(clazz);
+            StringBuilder query = new StringBuilder("SELECT ");
+            query.append(formatColumns(request.getColumns(), clazz, "get", c -> {
+                if (binary && c.equals("attributes")) {
+                    return c + ", " + ObjectBinder.BINARY_PREFIX + c;
+                }
+                return c;
+            }));
+            query.append(" FROM ").append(getStorageName(clazz));
+            return query.toString();
+        });
+    }
+
+    private String formatInsert(Class<?> clazz, Request request) throws StorageException {
+        return getStatement("insert", clazz, request.getColumns(), () -> {
+            boolean binary = binaryAttributes && hasBinaryAttributes(clazz);
+            Function<String, String> columnMapper = c -> {
+                if (binary && c.equals("attributes")) {
+                    return ObjectBinder.BINARY_PREFIX + c;
+                }
+                return c;
+            };
+            StringBuilder query = new StringBuilder("INSERT INTO ");
+            query.append(getStorageName(clazz));
+            query.append("(");
+            query.append(formatColumns(request.getColumns(), clazz, "set", columnMapper));
+            query.append(") VALUES (");
+            query.append(formatColumns(request.getColumns(), clazz, "set", c -> ':' + columnMapper.apply(c)));
+            query.append(")");
+            return query.toString();
+        });
+    }
+
+    private String formatUpdate(Class<?> clazz, Request request) throws StorageException {
+        return getStatement("update", clazz, request.getColumns(), () -> {
+            boolean binary = hasBinaryAttributes(clazz);
+            StringBuilder query = new StringBuilder("UPDATE ");
+            query.append(getStorageName(clazz));
+            query.append(" SET ");
+            query.append(formatColumns(request.getColumns(), clazz, "set", c -> {
+                if (binary && c.equals("attributes")) {
+                    String binaryColumn = ObjectBinder.BINARY_PREFIX + c;
+                    if (binaryAttributes) {
+                        return binaryColumn + " = :" + binaryColumn + ", " + c + " = NULL";
+                    } else {
+                        return c + " = :" + c + ", " + binaryColumn + " = NULL";
+                    }
+                }
+                return c + " = :" + c;
+            }));
+            return query.toString();
+        });
+    }
+
     private Map<String, Object> getConditionVariables(Condition genericCondition) {
         Map<String, Object> results = new HashMap<>();
         if (genericCondition instanceof Condition.Compare) {
@@ -201,6 +547,11 @@ public class DatabaseStorage extends Storage {
             var condition = (Condition.Between) genericCondition;
             results.put(condition.getFromVariable(), condition.getFromValue());
             results.put(condition.getToVariable(), condition.getToValue());
+        } else if (genericCondition instanceof Condition.In) {
+            var condition = (Condition.In) genericCondition;
+            for (int i = 0; i < condition.getValues().size(); i++) {
+                results.put(condition.getVariable() + i, condition.getValues().get(i));
+            }
         } else if (genericCondition instanceof Condition.Binary) {
             var condition = (Condition.Binary) genericCondition;
             results.putAll(getConditionVariables(condition.getFirst()));
@@ -254,6 +605,21 @@ public class DatabaseStorage extends Storage {
                 result.append(" AND :");
                 result.append(condition.getToVariable());
 
+            } else if (genericCondition instanceof Condition.In) {
+
+                var condition = (Condition.In) genericCondition;
+                result.append(condition.getColumn());
+                result.append(" IN (");
+                for (int i = 0; i < condition.getValues().size(); i++) {
+                    if (i > 0) {
+                        result.append(", ");
+                    }
+                    result.append(":");
+                    result.append(condition.getVariable());
+                    result.append(i);
+                }
+                result.append(")");
+
             } else if (genericCondition instanceof Condition.Binary) {
 
                 var condition = (Condition.Binary) genericCondition;
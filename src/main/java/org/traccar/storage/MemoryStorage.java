@@ -25,6 +25,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class MemoryStorage extends Storage {
@@ -36,6 +37,10 @@ public class MemoryStorage extends Storage {
         return null;
     }
 
+    @Override
+    public <T> void streamObjects(Class<T> clazz, Request request, Consumer<T> consumer) {
+    }
+
     @Override
     public <T> long addObject(T entity, Request request) {
         return 0;
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class ObjectBinder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ObjectBinder.class);
+
+    static final String BINARY_PREFIX = "binary";
+
+    private static final Map<Class<?>, Map<String, ObjectBinder>> CACHE = new ConcurrentHashMap<>();
+
+    private interface ParameterBinder {
+        void bind(Object object, PreparedStatement statement) throws Throwable;
+    }
+
+    private final ParameterBinder[] binders;
+
+    private ObjectBinder(Class<?> clazz, Map<String, List<Integer>> indexMap, ObjectMapper objectMapper) {
+        try {
+            List<ParameterBinder> list = new ArrayList<>();
+            for (Method method : clazz.getMethods()) {
+                if (method.getName().startsWith("get") && method.getParameterTypes().length == 0) {
+                    String name = method.getName().substring(3);
+                    List<Integer> indexes = indexMap.get(name.toLowerCase());
+                    if (indexes != null) {
+                        int[] array = indexes.stream().mapToInt(Integer::intValue).toArray();
+                        list.add(createBinder(method, name, array, objectMapper));
+                    }
+                    List<Integer> binaryIndexes = indexMap.get(BINARY_PREFIX + name.toLowerCase());
+                    if (binaryIndexes != null && method.getReturnType().equals(Map.class)) {
+                        int[] array = binaryIndexes.stream().mapToInt(Integer::intValue).toArray();
+                        list.add(createBinaryBinder(method, array, objectMapper));
+                    }
+                }
+            }
+            binders = list.toArray(new ParameterBinder[0]);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    static ObjectBinder get(
+            Class<?> clazz, String query, Map<String, List<Integer>> indexMap, ObjectMapper objectMapper) {
+        return CACHE.computeIfAbsent(clazz, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(query, key -> new ObjectBinder(clazz, indexMap, objectMapper));
+    }
+
+    private static MethodHandle getter(MethodHandle handle, Class<?> type) {
+        return handle.asType(MethodType.methodType(type, Object.class));
+    }
+
+    private static ParameterBinder createBinder(
+            Method method, String name, int[] indexes, ObjectMapper objectMapper) throws IllegalAccessException {
+
+        Class<?> returnType = method.getReturnType();
+        MethodHandle handle = MethodHandles.publicLookup().unreflect(method);
+
+        if (returnType.equals(boolean.class)) {
+            MethodHandle getter = getter(handle, boolean.class);
+            return (object, statement) -> {
+                boolean value = (boolean) getter.invokeExact(object);
+                for (int i : indexes) {
+                    statement.setBoolean(i, value);
+                }
+            };
+        } else if (returnType.equals(int.class)) {
+            MethodHandle getter = getter(handle, int.class);
+            return (object, statement) -> {
+                int value = (int) getter.invokeExact(object);
+                for (int i : indexes) {
+                    statement.setInt(i, value);
+                }
+            };
+        } else if (returnType.equals(long.class)) {
+            MethodHandle getter = getter(handle, long.class);
+            boolean nullIfZero = name.endsWith("Id");
+            return (object, statement) -> {
+                long value = (long) getter.invokeExact(object);
+                for (int i : indexes) {
+                    if (value == 0 && nullIfZero) {
+                        statement.setNull(i, Types.INTEGER);
+                    } else {
+                        statement.setLong(i, value);
+                    }
+                }
+            };
+        } else if (returnType.equals(double.class)) {
+            MethodHandle getter = getter(handle, double.class);
+            return (object, statement) -> {
+                double value = (double) getter.invokeExact(object);
+                for (int i : indexes) {
+                    statement.setDouble(i, value);
+                }
+            };
+        } else if (returnType.equals(String.class)) {
+            MethodHandle getter = getter(handle, String.class);
+            return (object, statement) -> bindString(statement, indexes, (String) getter.invokeExact(object));
+        } else if (returnType.equals(Date.class)) {
+            MethodHandle getter = getter(handle, Date.class);
+            return (object, statement) -> {
+                Date value = (Date) getter.invokeExact(object);
+                for (int i : indexes) {
+                    if (value == null) {
+                        statement.setNull(i, Types.TIMESTAMP);
+                    } else {
+                        statement.setTimestamp(i, new Timestamp(value.getTime()));
+                    }
+                }
+            };
+        } else if (returnType.equals(byte[].class)) {
+            MethodHandle getter = getter(handle, byte[].class);
+            return (object, statement) -> {
+                byte[] value = (byte[]) getter.invokeExact(object);
+                for (int i : indexes) {
+                    if (value == null) {
+                        statement.setNull(i, Types.BLOB);
+                    } else {
+                        statement.setBytes(i, value);
+                    }
+                }
+            };
+        } else {
+            MethodHandle getter = getter(handle, Object.class);
+            return (object, statement) -> bindString(
+                    statement, indexes, objectMapper.writeValueAsString((Object) getter.invokeExact(object)));
+        }
+    }
+
+    /**
+     * Bind attributes map using compact binary encoding to the parameter with a binary prefix.
+     */
+    @SuppressWarnings("unchecked")
+    private static ParameterBinder createBinaryBinder(
+            Method method, int[] indexes, ObjectMapper objectMapper) throws IllegalAccessException {
+        MethodHandle getter = getter(MethodHandles.publicLookup().unreflect(method), Map.class);
+        return (object, statement) -> {
+            Map<String, Object> value = (Map<String, Object>) getter.invokeExact(object);
+            for (int i : indexes) {
+                if (value == null) {
+                    statement.setNull(i, Types.BLOB);
+                } else {
+                    statement.setBytes(i, AttributeCodec.encode(objectMapper, value));
+                }
+            }
+        };
+    }
+
+    private static void bindString(PreparedStatement statement, int[] indexes, String value) throws SQLException {
+        for (int i : indexes) {
+            if (value == null) {
+                statement.setNull(i, Types.VARCHAR);
+            } else {
+                statement.setString(i, value);
+            }
+        }
+    }
+
+    void bind(Object object, PreparedStatement statement) throws SQLException {
+        for (ParameterBinder binder : binders) {
+            try {
+                binder.bind(object, statement);
+            } catch (SQLException error) {
+                throw error;
+            } catch (Throwable error) {
+                LOGGER.warn("Get property error", error);
+            }
+        }
+    }
+
+}
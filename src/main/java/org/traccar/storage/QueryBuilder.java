@@ -15,7 +15,6 @@
  */
 package org.traccar.storage;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,23 +23,25 @@ import org.traccar.config.Keys;
 import org.traccar.model.Permission;
 
 import javax.sql.DataSource;
-import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public final class QueryBuilder {
 
@@ -48,7 +49,11 @@ public final class QueryBuilder {
 
     private final ObjectMapper objectMapper;
 
-    private final Map<String, List<Integer>> indexMap = new HashMap<>();
+    private static final int PARSED_QUERY_CACHE_SIZE = 1024;
+
+    private static final Map<String, ParsedQuery> PARSED_QUERIES = new ConcurrentHashMap<>();
+
+    private Map<String, List<Integer>> indexMap = Collections.emptyMap();
     private Connection connection;
     private PreparedStatement statement;
     private final String query;
@@ -61,13 +66,14 @@ public final class QueryBuilder {
         this.query = query;
         this.returnGeneratedKeys = returnGeneratedKeys;
         if (query != null) {
+            ParsedQuery parsedQuery = parse(query);
+            indexMap = parsedQuery.indexMap;
             connection = dataSource.getConnection();
-            String parsedQuery = parse(query.trim(), indexMap);
             try {
                 if (returnGeneratedKeys) {
-                    statement = connection.prepareStatement(parsedQuery, Statement.RETURN_GENERATED_KEYS);
+                    statement = connection.prepareStatement(parsedQuery.query, Statement.RETURN_GENERATED_KEYS);
                 } else {
-                    statement = connection.prepareStatement(parsedQuery);
+                    statement = connection.prepareStatement(parsedQuery.query);
                 }
             } catch (SQLException error) {
                 connection.close();
@@ -76,6 +82,36 @@ public final class QueryBuilder {
         }
     }
 
+    private static final class ParsedQuery {
+
+        private final String query;
+        private final Map<String, List<Integer>> indexMap;
+
+        private ParsedQuery(String query, Map<String, List<Integer>> indexMap) {
+            this.query = query;
+            this.indexMap = indexMap;
+        }
+
+    }
+
+    /**
+     * Parse query or get it from the cache. Queries are generated from a limited set of templates, so once the cache
+     * is full new queries are parsed every time instead of evicting existing ones.
+     */
+    private static ParsedQuery parse(String query) {
+        ParsedQuery parsedQuery = PARSED_QUERIES.get(query);
+        if (parsedQuery == null) {
+            Map<String, List<Integer>> paramMap = new HashMap<>();
+            String result = parse(query.trim(), paramMap);
+            paramMap.replaceAll((name, indexList) -> Collections.unmodifiableList(new ArrayList<>(indexList)));
+            parsedQuery = new ParsedQuery(result, Collections.unmodifiableMap(paramMap));
+            if (PARSED_QUERIES.size() < PARSED_QUERY_CACHE_SIZE) {
+                PARSED_QUERIES.putIfAbsent(query, parsedQuery);
+            }
+        }
+        return parsedQuery;
+    }
+
     private static String parse(String query, Map<String, List<Integer>> paramMap) {
 
         int length = query.length();
@@ -144,12 +180,7 @@ public final class QueryBuilder {
     }
 
     private List<Integer> indexes(String name) {
-        name = name.toLowerCase();
-        List<Integer> result = indexMap.get(name);
-        if (result == null) {
-            result = new LinkedList<>();
-        }
-        return result;
+        return indexMap.getOrDefault(name.toLowerCase(), Collections.emptyList());
     }
 
     public QueryBuilder setBoolean(String name, boolean value) throws SQLException {
@@ -281,120 +312,18 @@ public final class QueryBuilder {
     }
 
     public QueryBuilder setObject(Object object) throws SQLException {
-
-        Method[] methods = object.getClass().getMethods();
-
-        for (Method method : methods) {
-            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0) {
-                String name = method.getName().substring(3);
-                try {
-                    if (method.getReturnType().equals(boolean.class)) {
-                        setBoolean(name, (Boolean) method.invoke(object));
-                    } else if (method.getReturnType().equals(int.class)) {
-                        setInteger(name, (Integer) method.invoke(object));
-                    } else if (method.getReturnType().equals(long.class)) {
-                        setLong(name, (Long) method.invoke(object), name.endsWith("Id"));
-                    } else if (method.getReturnType().equals(double.class)) {
-                        setDouble(name, (Double) method.invoke(object));
-                    } else if (method.getReturnType().equals(String.class)) {
-                        setString(name, (String) method.invoke(object));
-                    } else if (method.getReturnType().equals(Date.class)) {
-                        setDate(name, (Date) method.invoke(object));
-                    } else if (method.getReturnType().equals(byte[].class)) {
-                        setBlob(name, (byte[]) method.invoke(object));
-                    } else {
-                        setString(name, objectMapper.writeValueAsString(method.invoke(object)));
-                    }
-                } catch (IllegalAccessException | InvocationTargetException | JsonProcessingException error) {
-                    LOGGER.warn("Get property error", error);
-                }
+        if (query != null) {
+            try {
+                ObjectBinder.get(object.getClass(), query, indexMap, objectMapper).bind(object, statement);
+            } catch (SQLException error) {
+                statement.close();
+                connection.close();
+                throw error;
             }
         }
-
         return this;
     }
 
-    private interface ResultSetProcessor<T> {
-        void process(T object, ResultSet resultSet) throws SQLException;
-    }
-
-    private <T> void addProcessors(
-            List<ResultSetProcessor<T>> processors,
-            final Class<?> parameterType, final Method method, final String name) {
-
-        if (parameterType.equals(boolean.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getBoolean(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(int.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getInt(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(long.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getLong(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(double.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getDouble(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(String.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getString(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(Date.class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    Timestamp timestamp = resultSet.getTimestamp(name);
-                    if (timestamp != null) {
-                        method.invoke(object, new Date(timestamp.getTime()));
-                    }
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else if (parameterType.equals(byte[].class)) {
-            processors.add((object, resultSet) -> {
-                try {
-                    method.invoke(object, resultSet.getBytes(name));
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Set property error", error);
-                }
-            });
-        } else {
-            processors.add((object, resultSet) -> {
-                String value = resultSet.getString(name);
-                if (value != null && !value.isEmpty()) {
-                    try {
-                        method.invoke(object, objectMapper.readValue(value, parameterType));
-                    } catch (InvocationTargetException | IllegalAccessException | IOException error) {
-                        LOGGER.warn("Set property error", error);
-                    }
-                }
-            });
-        }
-    }
-
     private void logQuery() {
         if (Context.getConfig().getBoolean(Keys.LOGGER_QUERIES)) {
             LOGGER.info(query);
@@ -402,7 +331,7 @@ public final class QueryBuilder {
     }
 
     public <T> List<T> executeQuery(Class<T> clazz) throws SQLException {
-        List<T> result = new LinkedList<>();
+        List<T> result = new ArrayList<>();
 
         if (query != null) {
 
@@ -411,54 +340,56 @@ public final class QueryBuilder {
                 logQuery();
 
                 try (ResultSet resultSet = statement.executeQuery()) {
+                    RowMapper<T> mapper = RowMapper.get(clazz, resultSet.getMetaData(), objectMapper);
+                    while (resultSet.next()) {
+                        result.add(mapper.map(resultSet));
+                    }
+                }
 
-                    ResultSetMetaData resultMetaData = resultSet.getMetaData();
-
-                    List<ResultSetProcessor<T>> processors = new LinkedList<>();
-
-                    Method[] methods = clazz.getMethods();
-
-                    for (final Method method : methods) {
-                        if (method.getName().startsWith("set") && method.getParameterTypes().length == 1) {
-
-                            final String name = method.getName().substring(3);
-
-                            // Check if column exists
-                            boolean column = false;
-                            for (int i = 1; i <= resultMetaData.getColumnCount(); i++) {
-                                if (name.equalsIgnoreCase(resultMetaData.getColumnLabel(i))) {
-                                    column = true;
-                                    break;
-                                }
-                            }
-                            if (!column) {
-                                continue;
-                            }
+            } finally {
+                statement.close();
+                connection.close();
+            }
+        }
 
-                            addProcessors(processors, method.getParameterTypes()[0], method, name);
-                        }
-                    }
+        return result;
+    }
 
+    /**
+     * Stream query results. Timeout in seconds limits the whole time connection is held, including consumer time.
+     */
+    public <T> void executeQuery(
+            Class<T> clazz, int fetchSize, int timeout, Consumer<T> consumer) throws SQLException {
+        if (query != null) {
+            boolean autoCommit = connection.getAutoCommit();
+            try {
+                logQuery();
+                if (fetchSize > 0) {
+                    connection.setAutoCommit(false); // cursor based fetch requires transaction
+                    statement.setFetchSize(fetchSize);
+                }
+                long deadline = Long.MAX_VALUE;
+                if (timeout > 0) {
+                    statement.setQueryTimeout(timeout);
+                    deadline = System.currentTimeMillis() + timeout * 1000L;
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    RowMapper<T> mapper = RowMapper.get(clazz, resultSet.getMetaData(), objectMapper);
                     while (resultSet.next()) {
-                        try {
-                            T object = clazz.getDeclaredConstructor().newInstance();
-                            for (ResultSetProcessor<T> processor : processors) {
-                                processor.process(object, resultSet);
-                            }
-                            result.add(object);
-                        } catch (ReflectiveOperationException e) {
-                            throw new IllegalArgumentException();
+                        if (System.currentTimeMillis() > deadline) {
+                            throw new SQLTimeoutException("Streaming query timeout");
                         }
+                        consumer.accept(mapper.map(resultSet));
                     }
                 }
-
             } finally {
+                if (connection.getAutoCommit() != autoCommit) {
+                    connection.setAutoCommit(autoCommit);
+                }
                 statement.close();
                 connection.close();
             }
         }
-
-        return result;
     }
 
     public long executeUpdate() throws SQLException {
@@ -481,6 +412,48 @@ public final class QueryBuilder {
         return 0;
     }
 
+    public QueryBuilder addBatch() throws SQLException {
+        try {
+            statement.addBatch();
+        } catch (SQLException error) {
+            statement.close();
+            connection.close();
+            throw error;
+        }
+        return this;
+    }
+
+    public List<Long> executeBatch() throws SQLException {
+        List<Long> result = new LinkedList<>();
+        if (query != null) {
+            boolean autoCommit = connection.getAutoCommit();
+            try {
+                logQuery();
+                connection.setAutoCommit(false);
+                int count = statement.executeBatch().length;
+                if (returnGeneratedKeys) {
+                    try (ResultSet resultSet = statement.getGeneratedKeys()) {
+                        while (resultSet.next()) {
+                            result.add(resultSet.getLong(1));
+                        }
+                    }
+                    if (result.size() != count) {
+                        throw new SQLException("Generated keys are not supported for batch");
+                    }
+                }
+                connection.commit();
+            } catch (SQLException error) {
+                connection.rollback();
+                throw error;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+                statement.close();
+                connection.close();
+            }
+        }
+        return result;
+    }
+
     public List<Permission> executePermissionsQuery() throws SQLException {
         List<Permission> result = new LinkedList<>();
         if (query != null) {
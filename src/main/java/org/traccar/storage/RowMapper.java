@@ -0,0 +1,182 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+final class RowMapper<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RowMapper.class);
+
+    private static final Map<Class<?>, Map<String, RowMapper<?>>> CACHE = new ConcurrentHashMap<>();
+
+    private interface ColumnProcessor {
+        void process(Object object, ResultSet resultSet) throws Throwable;
+    }
+
+    private final MethodHandle constructor;
+    private final ColumnProcessor[] processors;
+
+    private RowMapper(Class<T> clazz, List<String> labels, ObjectMapper objectMapper) {
+        try {
+            constructor = MethodHandles.publicLookup()
+                    .findConstructor(clazz, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            List<ColumnProcessor> list = new ArrayList<>();
+            for (Method method : clazz.getMethods()) {
+                if (method.getName().startsWith("set") && method.getParameterTypes().length == 1) {
+                    String name = method.getName().substring(3).toLowerCase();
+                    int index = labels.indexOf(name);
+                    int binaryIndex = labels.indexOf(ObjectBinder.BINARY_PREFIX + name);
+                    if (binaryIndex >= 0 && method.getParameterTypes()[0].equals(Map.class)) {
+                        list.add(createBinaryProcessor(method, binaryIndex + 1, index + 1, objectMapper));
+                    } else if (index >= 0) {
+                        list.add(createProcessor(method, index + 1, objectMapper));
+                    }
+                }
+            }
+            processors = list.toArray(new ColumnProcessor[0]);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> RowMapper<T> get(
+            Class<T> clazz, ResultSetMetaData metaData, ObjectMapper objectMapper) throws SQLException {
+        List<String> labels = new ArrayList<>();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            labels.add(metaData.getColumnLabel(i).toLowerCase());
+        }
+        return (RowMapper<T>) CACHE.computeIfAbsent(clazz, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(String.join(",", labels), key -> new RowMapper<>(clazz, labels, objectMapper));
+    }
+
+    private static MethodHandle setter(MethodHandle handle, Class<?> type) {
+        return handle.asType(MethodType.methodType(void.class, Object.class, type));
+    }
+
+    private static ColumnProcessor createProcessor(
+            Method method, int index, ObjectMapper objectMapper) throws IllegalAccessException {
+
+        Class<?> parameterType = method.getParameterTypes()[0];
+        MethodHandle handle = MethodHandles.publicLookup().unreflect(method);
+
+        if (parameterType.equals(boolean.class)) {
+            MethodHandle setter = setter(handle, boolean.class);
+            return (object, resultSet) -> {
+                setter.invokeExact(object, resultSet.getBoolean(index));
+            };
+        } else if (parameterType.equals(int.class)) {
+            MethodHandle setter = setter(handle, int.class);
+            return (object, resultSet) -> {
+                setter.invokeExact(object, resultSet.getInt(index));
+            };
+        } else if (parameterType.equals(long.class)) {
+            MethodHandle setter = setter(handle, long.class);
+            return (object, resultSet) -> {
+                setter.invokeExact(object, resultSet.getLong(index));
+            };
+        } else if (parameterType.equals(double.class)) {
+            MethodHandle setter = setter(handle, double.class);
+            return (object, resultSet) -> {
+                setter.invokeExact(object, resultSet.getDouble(index));
+            };
+        } else if (parameterType.equals(String.class)) {
+            MethodHandle setter = setter(handle, String.class);
+            return (object, resultSet) -> {
+                setter.invokeExact(object, resultSet.getString(index));
+            };
+        } else if (parameterType.equals(Date.class)) {
+            MethodHandle setter = setter(handle, Date.class);
+            return (object, resultSet) -> {
+                Timestamp timestamp = resultSet.getTimestamp(index);
+                if (timestamp != null) {
+                    setter.invokeExact(object, new Date(timestamp.getTime()));
+                }
+            };
+        } else if (parameterType.equals(byte[].class)) {
+            MethodHandle setter = setter(handle, byte[].class);
+            return (object, resultSet) -> {
+                setter.invokeExact(object, resultSet.getBytes(index));
+            };
+        } else {
+            MethodHandle setter = setter(handle, Object.class);
+            return (object, resultSet) -> {
+                String value = resultSet.getString(index);
+                if (value != null && !value.isEmpty()) {
+                    setter.invokeExact(object, (Object) objectMapper.readValue(value, parameterType));
+                }
+            };
+        }
+    }
+
+    /**
+     * Read attributes map from the binary column, falling back to the JSON column for rows without binary value.
+     */
+    private static ColumnProcessor createBinaryProcessor(
+            Method method, int binaryIndex, int index, ObjectMapper objectMapper) throws IllegalAccessException {
+        MethodHandle setter = setter(MethodHandles.publicLookup().unreflect(method), Map.class);
+        return (object, resultSet) -> {
+            byte[] data = resultSet.getBytes(binaryIndex);
+            if (data != null) {
+                setter.invokeExact(object, AttributeCodec.decode(objectMapper, data));
+            } else if (index > 0) {
+                String value = resultSet.getString(index);
+                if (value != null && !value.isEmpty()) {
+                    setter.invokeExact(object, objectMapper.readValue(value, Map.class));
+                }
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    T map(ResultSet resultSet) throws SQLException {
+        T object;
+        try {
+            object = (T) (Object) constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new IllegalArgumentException(e);
+        }
+        for (ColumnProcessor processor : processors) {
+            try {
+                processor.process(object, resultSet);
+            } catch (SQLException error) {
+                throw error;
+            } catch (Throwable error) {
+                LOGGER.warn("Set property error", error);
+            }
+        }
+        return object;
+    }
+
+}
@@ -17,20 +17,58 @@ package org.traccar.storage;
 
 import org.traccar.model.BaseModel;
 import org.traccar.model.Permission;
+import org.traccar.storage.archive.PositionArchive;
+import org.traccar.storage.query.Condition;
 import org.traccar.storage.query.Request;
 
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 public abstract class Storage {
 
     public abstract <T> List<T> getObjects(Class<T> clazz, Request request) throws StorageException;
 
+    public <T> void streamObjects(Class<T> clazz, Request request, Consumer<T> consumer) throws StorageException {
+        getObjects(clazz, request).forEach(consumer);
+    }
+
     public abstract <T> long addObject(T entity, Request request) throws StorageException;
 
+    public <T> List<Long> addObjects(List<T> entities, Request request) throws StorageException {
+        List<Long> result = new ArrayList<>(entities.size());
+        for (T entity : entities) {
+            result.add(addObject(entity, request));
+        }
+        return result;
+    }
+
     public abstract <T> void updateObject(T entity, Request request) throws StorageException;
 
     public abstract void removeObject(Class<?> clazz, Request request) throws StorageException;
 
+    /**
+     * Make sure time partitions exist for the given period. Does nothing if storage is not partitioned.
+     */
+    public void updatePartitions(Class<?> clazz, String column, Date until) throws StorageException {
+    }
+
+    /**
+     * Remove records older than the given time. Partitioned storage might keep some of the expired records until
+     * the whole partition can be dropped. Database storage also keeps latest device positions.
+     */
+    public void removeExpired(Class<?> clazz, String column, Date time) throws StorageException {
+        removeObject(clazz, new Request(new Condition.Compare(column, "<", "time", time)));
+    }
+
+    /**
+     * Archive of old positions or null if archiving is not enabled.
+     */
+    public PositionArchive getArchive() {
+        return null;
+    }
+
     public abstract List<Permission> getPermissions(
             Class<? extends BaseModel> ownerClass, long ownerId,
             Class<? extends BaseModel> propertyClass, long propertyId) throws StorageException;
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.storage.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.traccar.model.Network;
+import org.traccar.model.Position;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Columnar position encoding. Every column is deflated separately. Identifiers, times and numeric values are delta
+ * encoded, all strings including attribute keys are stored once in a dictionary.
+ */
+public class ArchiveCodec {
+
+    private static final int MAGIC = 0x54434131;
+
+    private static final double SCALE = 10000000.0;
+    private static final double SCALE_LIMIT = 10000000000.0;
+
+    private static final int COLUMN_DICTIONARY = 0;
+    private static final int COLUMN_ID = 1;
+    private static final int COLUMN_FIX_TIME = 2;
+    private static final int COLUMN_DEVICE_TIME = 3;
+    private static final int COLUMN_SERVER_TIME = 4;
+    private static final int COLUMN_VALID = 5;
+    private static final int COLUMN_LATITUDE = 6;
+    private static final int COLUMN_LONGITUDE = 7;
+    private static final int COLUMN_ALTITUDE = 8;
+    private static final int COLUMN_SPEED = 9;
+    private static final int COLUMN_COURSE = 10;
+    private static final int COLUMN_ACCURACY = 11;
+    private static final int COLUMN_PROTOCOL = 12;
+    private static final int COLUMN_ADDRESS = 13;
+    private static final int COLUMN_NETWORK = 14;
+    private static final int COLUMN_ATTRIBUTES = 15;
+    private static final int COLUMN_COUNT = 16;
+
+    private static final int TYPE_INTEGER = 0;
+    private static final int TYPE_LONG = 1;
+    private static final int TYPE_DOUBLE = 2;
+    private static final int TYPE_TRUE = 3;
+    private static final int TYPE_FALSE = 4;
+    private static final int TYPE_STRING = 5;
+    private static final int TYPE_JSON = 6;
+
+    private final ObjectMapper objectMapper;
+
+    public ArchiveCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    private static final class ColumnWriter extends ByteArrayOutputStream {
+
+        private long previous;
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private void writeSigned(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        private void writeDelta(long value) {
+            writeSigned(value - previous);
+            previous = value;
+        }
+
+        private void writeFixed(long value) {
+            for (int i = 56; i >= 0; i -= 8) {
+                write((int) (value >>> i));
+            }
+        }
+
+        private void writeDecimal(double value) {
+            long scaled = Math.round(value * SCALE);
+            if (Math.abs(value) < SCALE_LIMIT && Double.compare(scaled / SCALE, value) == 0) {
+                long delta = scaled - previous;
+                writeVarLong(((delta << 1) ^ (delta >> 63)) << 1);
+                previous = scaled;
+            } else {
+                writeVarLong(1);
+                writeFixed(Double.doubleToRawLongBits(value));
+            }
+        }
+
+        private byte[] compress() {
+            Deflater deflater = new Deflater();
+            try {
+                deflater.setInput(buf, 0, count);
+                deflater.finish();
+                ByteArrayOutputStream output = new ByteArrayOutputStream(count / 2 + 16);
+                byte[] buffer = new byte[4096];
+                while (!deflater.finished()) {
+                    output.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return output.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+    }
+
+    private static final class ColumnReader {
+
+        private final ByteBuffer buffer;
+        private long previous;
+
+        private ColumnReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private long readVarLong() {
+            long result = 0;
+            for (int shift = 0;; shift += 7) {
+                int b = buffer.get();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+        }
+
+        private long readSigned() {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readDelta() {
+            previous += readSigned();
+            return previous;
+        }
+
+        private double readDecimal() {
+            long value = readVarLong();
+            if ((value & 1) != 0) {
+                return Double.longBitsToDouble(buffer.getLong());
+            }
+            value >>>= 1;
+            previous += (value >>> 1) ^ -(value & 1);
+            return previous / SCALE;
+        }
+
+    }
+
+    private static int lookup(Map<String, Integer> dictionary, String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer index = dictionary.get(value);
+        if (index == null) {
+            index = dictionary.size() + 1;
+            dictionary.put(value, index);
+        }
+        return index;
+    }
+
+    private void writeValue(ColumnWriter column, Map<String, Integer> dictionary, Object value) throws IOException {
+        if (value instanceof Integer) {
+            column.write(TYPE_INTEGER);
+            column.writeSigned((Integer) value);
+        } else if (value instanceof Long) {
+            column.write(TYPE_LONG);
+            column.writeSigned((Long) value);
+        } else if (value instanceof Double) {
+            column.write(TYPE_DOUBLE);
+            column.writeFixed(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof Boolean) {
+            column.write((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+        } else if (value instanceof String) {
+            column.write(TYPE_STRING);
+            column.writeVarLong(lookup(dictionary, (String) value));
+        } else {
+            column.write(TYPE_JSON);
+            column.writeVarLong(lookup(dictionary, objectMapper.writeValueAsString(value)));
+        }
+    }
+
+    private Object readValue(ColumnReader column, String[] strings) throws IOException {
+        int type = column.buffer.get();
+        switch (type) {
+            case TYPE_INTEGER:
+                return (int) column.readSigned();
+            case TYPE_LONG:
+                return column.readSigned();
+            case TYPE_DOUBLE:
+                return column.buffer.getDouble();
+            case TYPE_TRUE:
+                return true;
+            case TYPE_FALSE:
+                return false;
+            case TYPE_STRING:
+                return strings[(int) column.readVarLong()];
+            case TYPE_JSON:
+                return objectMapper.readValue(strings[(int) column.readVarLong()], Object.class);
+            default:
+                throw new IOException("Unknown attribute type " + type);
+        }
+    }
+
+    public byte[] encode(List<Position> positions) throws IOException {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        ColumnWriter[] columns = new ColumnWriter[COLUMN_COUNT];
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            columns[i] = new ColumnWriter();
+        }
+
+        for (Position position : positions) {
+            long fixTime = position.getFixTime().getTime();
+            columns[COLUMN_ID].writeDelta(position.getId());
+            columns[COLUMN_FIX_TIME].writeDelta(fixTime);
+            columns[COLUMN_DEVICE_TIME].writeSigned(position.getDeviceTime().getTime() - fixTime);
+            columns[COLUMN_SERVER_TIME].writeSigned(position.getServerTime().getTime() - fixTime);
+            columns[COLUMN_VALID].write(position.getValid() ? 1 : 0);
+            columns[COLUMN_LATITUDE].writeDecimal(position.getLatitude());
+            columns[COLUMN_LONGITUDE].writeDecimal(position.getLongitude());
+            columns[COLUMN_ALTITUDE].writeDecimal(position.getAltitude());
+            columns[COLUMN_SPEED].writeDecimal(position.getSpeed());
+            columns[COLUMN_COURSE].writeDecimal(position.getCourse());
+            columns[COLUMN_ACCURACY].writeDecimal(position.getAccuracy());
+            columns[COLUMN_PROTOCOL].writeVarLong(lookup(dictionary, position.getProtocol()));
+            columns[COLUMN_ADDRESS].writeVarLong(lookup(dictionary, position.getAddress()));
+            Network network = position.getNetwork();
+            columns[COLUMN_NETWORK].writeVarLong(
+                    lookup(dictionary, network != null ? objectMapper.writeValueAsString(network) : null));
+            Map<String, Object> attributes = position.getAttributes();
+            columns[COLUMN_ATTRIBUTES].writeVarLong(attributes.size());
+            for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+                columns[COLUMN_ATTRIBUTES].writeVarLong(lookup(dictionary, entry.getKey()));
+                writeValue(columns[COLUMN_ATTRIBUTES], dictionary, entry.getValue());
+            }
+        }
+
+        columns[COLUMN_DICTIONARY].writeVarLong(dictionary.size());
+        for (String value : dictionary.keySet()) {
+            byte[] data = value.getBytes(StandardCharsets.UTF_8);
+            columns[COLUMN_DICTIONARY].writeVarLong(data.length);
+            columns[COLUMN_DICTIONARY].write(data, 0, data.length);
+        }
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(result);
+        output.writeInt(MAGIC);
+        output.writeInt(positions.size());
+        for (ColumnWriter column : columns) {
+            byte[] data = column.compress();
+            output.writeInt(column.size());
+            output.writeInt(data.length);
+            output.write(data);
+        }
+        return result.toByteArray();
+    }
+
+    private static ColumnReader decompress(ByteBuffer buffer) throws IOException {
+        int size = buffer.getInt();
+        int length = buffer.getInt();
+        ByteBuffer input = buffer.slice();
+        input.limit(length);
+        buffer.position(buffer.position() + length);
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            byte[] data = new byte[size];
+            int offset = 0;
+            while (offset < size) {
+                int count = inflater.inflate(data, offset, size - offset);
+                if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Truncated archive column");
+                }
+                offset += count;
+            }
+            return new ColumnReader(ByteBuffer.wrap(data));
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public void decode(long deviceId, ByteBuffer buffer, Consumer<Position> consumer) throws IOException {
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Unknown archive format");
+        }
+        int count = buffer.getInt();
+        ColumnReader[] columns = new ColumnReader[COLUMN_COUNT];
+        for (int i = 0; i < COLUMN_COUNT; i++) {
+            columns[i] = decompress(buffer);
+        }
+
+        ColumnReader dictionary = columns[COLUMN_DICTIONARY];
+        String[] strings = new String[(int) dictionary.readVarLong() + 1];
+        for (int i = 1; i < strings.length; i++) {
+            byte[] data = new byte[(int) dictionary.readVarLong()];
+            dictionary.buffer.get(data);
+            strings[i] = new String(data, StandardCharsets.UTF_8);
+        }
+
+        for (int i = 0; i < count; i++) {
+            Position position = new Position();
+            position.setDeviceId(deviceId);
+            position.setId(columns[COLUMN_ID].readDelta());
+            long fixTime = columns[COLUMN_FIX_TIME].readDelta();
+            position.setFixTime(new Date(fixTime));
+            position.setDeviceTime(new Date(fixTime + columns[COLUMN_DEVICE_TIME].readSigned()));
+            position.setServerTime(new Date(fixTime + columns[COLUMN_SERVER_TIME].readSigned()));
+            position.setValid(columns[COLUMN_VALID].buffer.get() != 0);
+            position.setLatitude(columns[COLUMN_LATITUDE].readDecimal());
+            position.setLongitude(columns[COLUMN_LONGITUDE].readDecimal());
+            position.setAltitude(columns[COLUMN_ALTITUDE].readDecimal());
+            position.setSpeed(columns[COLUMN_SPEED].readDecimal());
+            position.setCourse(columns[COLUMN_COURSE].readDecimal());
+            position.setAccuracy(columns[COLUMN_ACCURACY].readDecimal());
+            position.setProtocol(strings[(int) columns[COLUMN_PROTOCOL].readVarLong()]);
+            position.setAddress(strings[(int) columns[COLUMN_ADDRESS].readVarLong()]);
+            String network = strings[(int) columns[COLUMN_NETWORK].readVarLong()];
+            if (network != null) {
+                position.setNetwork(objectMapper.readValue(network, Network.class));
+            }
+            int attributeCount = (int) columns[COLUMN_ATTRIBUTES].readVarLong();
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            for (int j = 0; j < attributeCount; j++) {
+                String key = strings[(int) columns[COLUMN_ATTRIBUTES].readVarLong()];
+                attributes.put(key, readValue(columns[COLUMN_ATTRIBUTES], strings));
+            }
+            position.setAttributes(attributes);
+            consumer.accept(position);
+        }
+    }
+
+}
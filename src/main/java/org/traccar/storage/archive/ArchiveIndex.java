@@ -0,0 +1,196 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.storage.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Immutable list of archived days for a single device sorted by day start. Every day keeps its time and id range,
+ * so positions can be located either by time or by id.
+ */
+final class ArchiveIndex {
+
+    private static final int MAGIC = 0x54434932;
+
+    static final ArchiveIndex EMPTY = new ArchiveIndex(
+            0, new long[0], new int[0], new long[0], new long[0], new long[0], new long[0]);
+
+    private final long archivedUntil;
+    private final long[] days;
+    private final int[] counts;
+    private final long[] firstTimes;
+    private final long[] lastTimes;
+    private final long[] minIds;
+    private final long[] maxIds;
+
+    private ArchiveIndex(
+            long archivedUntil, long[] days, int[] counts, long[] firstTimes, long[] lastTimes,
+            long[] minIds, long[] maxIds) {
+        this.archivedUntil = archivedUntil;
+        this.days = days;
+        this.counts = counts;
+        this.firstTimes = firstTimes;
+        this.lastTimes = lastTimes;
+        this.minIds = minIds;
+        this.maxIds = maxIds;
+    }
+
+    static ArchiveIndex read(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Unknown archive index format");
+        }
+        long archivedUntil = buffer.getLong();
+        int size = buffer.getInt();
+        long[] days = new long[size];
+        int[] counts = new int[size];
+        long[] firstTimes = new long[size];
+        long[] lastTimes = new long[size];
+        long[] minIds = new long[size];
+        long[] maxIds = new long[size];
+        for (int i = 0; i < size; i++) {
+            days[i] = buffer.getLong();
+            counts[i] = buffer.getInt();
+            firstTimes[i] = buffer.getLong();
+            lastTimes[i] = buffer.getLong();
+            minIds[i] = buffer.getLong();
+            maxIds[i] = buffer.getLong();
+        }
+        return new ArchiveIndex(archivedUntil, days, counts, firstTimes, lastTimes, minIds, maxIds);
+    }
+
+    byte[] toByteArray() {
+        ByteBuffer buffer = ByteBuffer.allocate(16 + days.length * 44);
+        buffer.putInt(MAGIC);
+        buffer.putLong(archivedUntil);
+        buffer.putInt(days.length);
+        for (int i = 0; i < days.length; i++) {
+            buffer.putLong(days[i]);
+            buffer.putInt(counts[i]);
+            buffer.putLong(firstTimes[i]);
+            buffer.putLong(lastTimes[i]);
+            buffer.putLong(minIds[i]);
+            buffer.putLong(maxIds[i]);
+        }
+        return buffer.array();
+    }
+
+    long getArchivedUntil() {
+        return archivedUntil;
+    }
+
+    boolean contains(long day) {
+        return Arrays.binarySearch(days, day) >= 0;
+    }
+
+    long[] getDays() {
+        return days;
+    }
+
+    /**
+     * Days that have positions within the given inclusive time range.
+     */
+    long[] findDays(long from, long to) {
+        int index = Arrays.binarySearch(lastTimes, from);
+        int start = index >= 0 ? index : -index - 1;
+        while (start > 0 && lastTimes[start - 1] >= from) {
+            start -= 1;
+        }
+        long[] result = new long[days.length - start];
+        int count = 0;
+        for (int i = start; i < days.length && firstTimes[i] <= to; i++) {
+            result[count++] = days[i];
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Days whose id range includes the given position id.
+     */
+    long[] findDaysById(long id) {
+        long[] result = new long[days.length];
+        int count = 0;
+        for (int i = 0; i < days.length; i++) {
+            if (id >= minIds[i] && id <= maxIds[i]) {
+                result[count++] = days[i];
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    ArchiveIndex withDay(long day, int count, long firstTime, long lastTime, long minId, long maxId) {
+        int index = Arrays.binarySearch(days, day);
+        if (index >= 0) {
+            int[] newCounts = counts.clone();
+            long[] newFirstTimes = firstTimes.clone();
+            long[] newLastTimes = lastTimes.clone();
+            long[] newMinIds = minIds.clone();
+            long[] newMaxIds = maxIds.clone();
+            newCounts[index] = count;
+            newFirstTimes[index] = firstTime;
+            newLastTimes[index] = lastTime;
+            newMinIds[index] = minId;
+            newMaxIds[index] = maxId;
+            return new ArchiveIndex(
+                    archivedUntil, days, newCounts, newFirstTimes, newLastTimes, newMinIds, newMaxIds);
+        }
+        int position = -index - 1;
+        return new ArchiveIndex(
+                archivedUntil,
+                insert(days, position, day),
+                insert(counts, position, count),
+                insert(firstTimes, position, firstTime),
+                insert(lastTimes, position, lastTime),
+                insert(minIds, position, minId),
+                insert(maxIds, position, maxId));
+    }
+
+    ArchiveIndex withArchivedUntil(long time) {
+        return new ArchiveIndex(
+                Math.max(archivedUntil, time), days, counts, firstTimes, lastTimes, minIds, maxIds);
+    }
+
+    ArchiveIndex withoutDaysBefore(long day) {
+        int index = Arrays.binarySearch(days, day);
+        int start = index >= 0 ? index : -index - 1;
+        return new ArchiveIndex(
+                archivedUntil,
+                Arrays.copyOfRange(days, start, days.length),
+                Arrays.copyOfRange(counts, start, counts.length),
+                Arrays.copyOfRange(firstTimes, start, firstTimes.length),
+                Arrays.copyOfRange(lastTimes, start, lastTimes.length),
+                Arrays.copyOfRange(minIds, start, minIds.length),
+                Arrays.copyOfRange(maxIds, start, maxIds.length));
+    }
+
+    private static long[] insert(long[] array, int position, long value) {
+        long[] result = new long[array.length + 1];
+        System.arraycopy(array, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(array, position, result, position + 1, array.length - position);
+        return result;
+    }
+
+    private static int[] insert(int[] array, int position, int value) {
+        int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(array, position, result, position + 1, array.length - position);
+        return result;
+    }
+
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright 2022 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.storage.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.traccar.model.Position;
+import org.traccar.storage.StorageException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * File based archive of old positions. Every device has a directory with one columnar file per UTC day and an index
+ * of archived days. Positions older than the archive boundary of a device are read only from the archive.
+ */
+public class PositionArchive {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private static final String INDEX_FILE = "index";
+
+    private static final DateTimeFormatter DAY_FORMAT =
+            DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    private final Path root;
+    private final ArchiveCodec codec;
+
+    private final Map<Long, ArchiveIndex> indexes = new ConcurrentHashMap<>();
+
+    public PositionArchive(Path root, ObjectMapper objectMapper) {
+        this.root = root;
+        this.codec = new ArchiveCodec(objectMapper);
+    }
+
+    public static long getDayStart(long time) {
+        return time - Math.floorMod(time, DAY);
+    }
+
+    private Path getDevicePath(long deviceId) {
+        return root.resolve(String.valueOf(deviceId));
+    }
+
+    private Path getDayPath(long deviceId, long day) {
+        return getDevicePath(deviceId).resolve(DAY_FORMAT.format(Instant.ofEpochMilli(day)) + ".dat");
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static void write(Path path, byte[] data) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private ArchiveIndex getIndex(long deviceId) throws StorageException {
+        ArchiveIndex index = indexes.get(deviceId);
+        if (index == null) {
+            Path path = getDevicePath(deviceId).resolve(INDEX_FILE);
+            try {
+                index = Files.exists(path) ? ArchiveIndex.read(map(path)) : ArchiveIndex.EMPTY;
+            } catch (IOException e) {
+                throw new StorageException(e);
+            }
+            ArchiveIndex existing = indexes.putIfAbsent(deviceId, index);
+            if (existing != null) {
+                index = existing;
+            }
+        }
+        return index;
+    }
+
+    private void updateIndex(long deviceId, ArchiveIndex index) throws IOException {
+        write(getDevicePath(deviceId).resolve(INDEX_FILE), index.toByteArray());
+        indexes.put(deviceId, index);
+    }
+
+    private void readDay(long deviceId, long day, Consumer<Position> consumer) throws StorageException {
+        try {
+            codec.decode(deviceId, map(getDayPath(deviceId, day)), consumer);
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    /**
+     * Time before which device positions are kept in the archive or null if nothing is archived.
+     */
+    public Date getArchivedUntil(long deviceId) throws StorageException {
+        long archivedUntil = getIndex(deviceId).getArchivedUntil();
+        return archivedUntil > 0 ? new Date(archivedUntil) : null;
+    }
+
+    public void streamPositions(
+            long deviceId, Date from, Date to, Consumer<Position> consumer) throws StorageException {
+        long fromTime = from.getTime();
+        long toTime = to.getTime();
+        for (long day : getIndex(deviceId).findDays(fromTime, toTime)) {
+            readDay(deviceId, day, position -> {
+                long time = position.getFixTime().getTime();
+                if (time >= fromTime && time <= toTime) {
+                    consumer.accept(position);
+                }
+            });
+        }
+    }
+
+    public Position getPosition(long deviceId, long positionId, Date fixTime) throws StorageException {
+        long day = getDayStart(fixTime.getTime());
+        if (!getIndex(deviceId).contains(day)) {
+            return null;
+        }
+        Position[] result = new Position[1];
+        readDay(deviceId, day, position -> {
+            if (position.getId() == positionId) {
+                result[0] = position;
+            }
+        });
+        return result[0];
+    }
+
+    /**
+     * Find position by id alone using id ranges of archived days. Returns null if the position is not archived.
+     */
+    public Position getPosition(long positionId) throws StorageException {
+        if (!Files.isDirectory(root)) {
+            return null;
+        }
+        Position[] result = new Position[1];
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(root, "[0-9]*")) {
+            for (Path directory : directories) {
+                long deviceId = Long.parseLong(directory.getFileName().toString());
+                for (long day : getIndex(deviceId).findDaysById(positionId)) {
+                    readDay(deviceId, day, position -> {
+                        if (position.getId() == positionId) {
+                            result[0] = position;
+                        }
+                    });
+                    if (result[0] != null) {
+                        return result[0];
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+        return null;
+    }
+
+    /**
+     * Find positions by id using their fix time to locate archived days. Each day is read at most once.
+     */
+    public Map<Long, Position> getPositions(long deviceId, Map<Long, Date> fixTimes) throws StorageException {
+        TreeSet<Long> days = new TreeSet<>();
+        for (Date fixTime : fixTimes.values()) {
+            days.add(getDayStart(fixTime.getTime()));
+        }
+        ArchiveIndex index = getIndex(deviceId);
+        Map<Long, Position> result = new HashMap<>();
+        for (long day : days) {
+            if (index.contains(day)) {
+                readDay(deviceId, day, position -> {
+                    if (fixTimes.containsKey(position.getId())) {
+                        result.put(position.getId(), position);
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Add positions to the archive. Positions already stored in the archive are replaced.
+     */
+    public synchronized void storePositions(long deviceId, List<Position> positions) throws StorageException {
+        Map<Long, List<Position>> days = new TreeMap<>();
+        for (Position position : positions) {
+            days.computeIfAbsent(getDayStart(position.getFixTime().getTime()), key -> new ArrayList<>())
+                    .add(position);
+        }
+        ArchiveIndex index = getIndex(deviceId);
+        try {
+            for (Map.Entry<Long, List<Position>> entry : days.entrySet()) {
+                long day = entry.getKey();
+                Map<Long, Position> merged = new LinkedHashMap<>();
+                if (index.contains(day)) {
+                    readDay(deviceId, day, position -> merged.put(position.getId(), position));
+                }
+                entry.getValue().forEach(position -> merged.put(position.getId(), position));
+                List<Position> result = new ArrayList<>(merged.values());
+                result.sort(Comparator.comparing(Position::getFixTime));
+
+                write(getDayPath(deviceId, day), codec.encode(result));
+                long minId = Long.MAX_VALUE;
+                long maxId = Long.MIN_VALUE;
+                for (Position position : result) {
+                    minId = Math.min(minId, position.getId());
+                    maxId = Math.max(maxId, position.getId());
+                }
+                index = index.withDay(day, result.size(),
+                        result.get(0).getFixTime().getTime(), result.get(result.size() - 1).getFixTime().getTime(),
+                        minId, maxId);
+            }
+            updateIndex(deviceId, index);
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    /**
+     * Move archive boundary for the device. Positions before the boundary must be stored before calling this.
+     */
+    public synchronized void updateArchivedUntil(long deviceId, Date time) throws StorageException {
+        try {
+            updateIndex(deviceId, getIndex(deviceId).withArchivedUntil(time.getTime()));
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+    /**
+     * Delete archived days that end before the given time.
+     */
+    public synchronized void removeExpired(Date time) throws StorageException {
+        long limit = time.getTime() - DAY;
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(root, "[0-9]*")) {
+            for (Path directory : directories) {
+                long deviceId = Long.parseLong(directory.getFileName().toString());
+                ArchiveIndex index = getIndex(deviceId);
+                ArchiveIndex updated = index.withoutDaysBefore(limit + 1);
+                if (updated.getDays().length < index.getDays().length) {
+                    updateIndex(deviceId, updated);
+                    for (long day : index.getDays()) {
+                        if (day <= limit) {
+                            Files.deleteIfExists(getDayPath(deviceId, day));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new StorageException(e);
+        }
+    }
+
+}
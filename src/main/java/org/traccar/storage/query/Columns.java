@@ -49,6 +49,16 @@ public abstract class Columns {
         public List<String> getColumns(Class<?> clazz, String type) {
             return getAllColumns(clazz, type);
         }
+
+        @Override
+        public boolean equals(Object o) {
+            return o != null && getClass() == o.getClass();
+        }
+
+        @Override
+        public int hashCode() {
+            return getClass().hashCode();
+        }
     }
 
     public static class Include extends Columns {
@@ -62,6 +72,22 @@ public abstract class Columns {
         public List<String> getColumns(Class<?> clazz, String type) {
             return columns;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            return columns.equals(((Include) o).columns);
+        }
+
+        @Override
+        public int hashCode() {
+            return columns.hashCode();
+        }
     }
 
     public static class Exclude extends Columns {
@@ -77,6 +103,22 @@ public abstract class Columns {
                     .filter(column -> !columns.contains(column))
                     .collect(Collectors.toList());
         }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            return columns.equals(((Exclude) o).columns);
+        }
+
+        @Override
+        public int hashCode() {
+            return columns.hashCode();
+        }
     }
 
 }
@@ -109,6 +109,30 @@ public interface Condition {
         }
     }
 
+    class In implements Condition {
+        private final String column;
+        private final String variable;
+        private final List<?> values;
+
+        public In(String column, String variable, List<?> values) {
+            this.column = column;
+            this.variable = variable;
+            this.values = values;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public String getVariable() {
+            return variable;
+        }
+
+        public List<?> getValues() {
+            return values;
+        }
+    }
+
     class Or extends Binary {
         public Or(Condition first, Condition second) {
             super(first, second, "OR");
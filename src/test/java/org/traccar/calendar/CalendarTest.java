@@ -11,12 +11,12 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class CalendarTest {
     
-    @Test
-    public void testCalendar() throws IOException, ParserException, ParseException, SQLException {
+    private Calendar createCalendar() throws IOException, ParserException {
         String calendarString = "BEGIN:VCALENDAR\n" + 
                 "PRODID:-//Mozilla.org/NONSGML Mozilla Calendar V1.1//EN\n" + 
                 "VERSION:2.0\n" + 
@@ -43,6 +43,12 @@ public class CalendarTest {
                 "END:VCALENDAR";
         Calendar calendar = new Calendar();
         calendar.setData(calendarString.getBytes());
+        return calendar;
+    }
+
+    @Test
+    public void testCalendar() throws IOException, ParserException, ParseException, SQLException {
+        Calendar calendar = createCalendar();
         DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssX");
 
         Date date = format.parse("2016-12-13 22:59:59+05");
@@ -54,5 +60,37 @@ public class CalendarTest {
         assertTrue(calendar.checkMoment(date));
         date = format.parse("2016-12-13 07:00:01+05");
         assertTrue(!calendar.checkMoment(date));
+
+        date = format.parse("2017-01-20 23:30:00+05");
+        assertTrue(calendar.checkMoment(date));
+        date = format.parse("2017-01-20 12:00:00+05");
+        assertTrue(!calendar.checkMoment(date));
+        date = format.parse("2016-12-13 23:00:01+05");
+        assertTrue(calendar.checkMoment(date));
     }
+
+    @Test
+    public void testAlternatingTimes() throws IOException, ParserException, ParseException {
+        Calendar calendar = createCalendar();
+        DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ssX");
+
+        Date[] inside = {
+                format.parse("2016-12-13 23:30:00+05"),
+                format.parse("2016-12-15 05:30:00+05"),
+                format.parse("2018-06-01 02:00:00+05"),
+                format.parse("2021-03-15 06:30:00+05")};
+        Date[] outside = {
+                format.parse("2016-12-13 12:00:00+05"),
+                format.parse("2016-12-15 07:30:00+05"),
+                format.parse("2018-06-01 15:00:00+05"),
+                format.parse("2021-03-15 08:00:00+05")};
+
+        for (int i = 0; i < 10; i++) {
+            for (int j = 0; j < inside.length; j++) {
+                assertTrue(calendar.checkMoment(inside[j]));
+                assertFalse(calendar.checkMoment(outside[j]));
+            }
+        }
+    }
+
 }
@@ -0,0 +1,45 @@
+package org.traccar.geofence;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GeofenceIndexTest {
+
+    @Test
+    public void testGetContaining() throws ParseException {
+        GeofenceIndex index = new GeofenceIndex();
+        index.put(1, new GeofenceCircle("CIRCLE (55.75414 37.6204, 100)"));
+        index.put(2, new GeofencePolygon(
+                "POLYGON ((55.75474 37.61823, 55.75513 37.61888, 55.7535 37.6222, 55.75315 37.62165))"));
+        index.put(3, new GeofencePolyline("LINESTRING (-23.5 148.8, -23.6 148.9)", 1000));
+
+        assertEquals(Collections.singletonList(1L), index.getContaining(55.75477, 37.62025, id -> true));
+        assertEquals(Collections.singletonList(2L), index.getContaining(55.75412, 37.62049, id -> id != 1));
+        assertEquals(Collections.singletonList(3L), index.getContaining(-23.55, 148.85, id -> true));
+        assertTrue(index.getContaining(0, 0, id -> true).isEmpty());
+
+        index.remove(1);
+        List<Long> result = index.getContaining(55.75477, 37.62025, id -> true);
+        assertTrue(!result.contains(1L));
+
+        index.put(2, new GeofenceCircle("CIRCLE (10 10, 100)"));
+        assertEquals(Collections.singletonList(2L), index.getContaining(10, 10, id -> true));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void testAntimeridian() throws ParseException {
+        GeofenceIndex index = new GeofenceIndex();
+        index.put(1, new GeofencePolygon("POLYGON ((10 179, 10 -179, -10 -179, -10 179))"));
+        index.put(2, new GeofenceCircle("CIRCLE (0 179.9999, 1000)"));
+
+        assertEquals(2, index.getContaining(0, -179.9999, id -> true).size());
+    }
+
+}
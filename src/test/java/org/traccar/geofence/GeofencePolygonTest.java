@@ -3,6 +3,7 @@ package org.traccar.geofence;
 import org.junit.Test;
 
 import java.text.ParseException;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -56,4 +57,37 @@ public class GeofencePolygonTest {
 
     }
 
+    @Test
+    public void testContainsLargePolygon() throws ParseException {
+        int corners = 1000;
+        double[] latitudes = new double[corners];
+        double[] longitudes = new double[corners];
+        StringBuilder test = new StringBuilder("POLYGON ((");
+        for (int i = 0; i < corners; i++) {
+            double angle = 2 * Math.PI * i / corners;
+            double radius = i % 2 == 0 ? 1.0 : 0.5;
+            latitudes[i] = 50 + radius * Math.cos(angle);
+            longitudes[i] = 10 + radius * Math.sin(angle);
+            test.append(latitudes[i]).append(' ').append(longitudes[i]).append(", ");
+        }
+        test.setLength(test.length() - 2);
+        test.append("))");
+        GeofenceGeometry geofenceGeometry = new GeofencePolygon(test.toString());
+
+        Random random = new Random(1);
+        for (int k = 0; k < 10000; k++) {
+            double latitude = 48.5 + 3 * random.nextDouble();
+            double longitude = 8.5 + 3 * random.nextDouble();
+            boolean expected = false;
+            for (int i = 0, j = corners - 1; i < corners; j = i++) {
+                if ((longitudes[i] > longitude) != (longitudes[j] > longitude)
+                        && latitude > (latitudes[j] - latitudes[i]) * (longitude - longitudes[i])
+                        / (longitudes[j] - longitudes[i]) + latitudes[i]) {
+                    expected = !expected;
+                }
+            }
+            assertEquals(expected, geofenceGeometry.containsPoint(latitude, longitude));
+        }
+    }
+
 }
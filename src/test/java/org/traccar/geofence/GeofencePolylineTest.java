@@ -2,7 +2,10 @@ package org.traccar.geofence;
 
 import org.junit.Test;
 
+import org.traccar.helper.DistanceCalculator;
+
 import java.text.ParseException;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -44,4 +47,76 @@ public class GeofencePolylineTest {
         assertTrue(!geofenceGeometry.containsPoint(66.96, 180.0));
         assertTrue(!geofenceGeometry.containsPoint(66.9509, -179.83));
     }
+
+    @Test
+    public void testContainsLongPolyline() throws ParseException {
+        Random random = new Random(1);
+        int points = 2000;
+        double[] latitudes = new double[points];
+        double[] longitudes = new double[points];
+        StringBuilder test = new StringBuilder("LINESTRING (");
+        for (int i = 0; i < points; i++) {
+            latitudes[i] = i > 0 ? latitudes[i - 1] + (random.nextDouble() - 0.3) * 0.01 : 60;
+            longitudes[i] = i > 0 ? longitudes[i - 1] + (random.nextDouble() - 0.2) * 0.01 : 30;
+            test.append(latitudes[i]).append(' ').append(longitudes[i]).append(", ");
+        }
+        test.setLength(test.length() - 2);
+        test.append(")");
+        GeofenceGeometry geofenceGeometry = new GeofencePolyline(test.toString(), 100);
+
+        for (int k = 0; k < 10000; k++) {
+            int i = random.nextInt(points - 1);
+            double latitude = latitudes[i] + (random.nextDouble() - 0.5) * 0.005;
+            double longitude = longitudes[i] + (random.nextDouble() - 0.5) * 0.01;
+            boolean expected = false;
+            for (int j = 1; j < points && !expected; j++) {
+                expected = DistanceCalculator.distanceToLine(
+                        latitude, longitude, latitudes[j - 1], longitudes[j - 1], latitudes[j], longitudes[j]) <= 100;
+            }
+            assertEquals(expected, geofenceGeometry.containsPoint(latitude, longitude));
+        }
+    }
+
+    @Test
+    public void testContainsLongHighLatitudeSegments() throws ParseException {
+        Random random = new Random(2);
+        double degreeDistance = DistanceCalculator.distance(0, 0, 1, 0);
+        for (int n = 0; n < 2000; n++) {
+            double latitude1 = (random.nextDouble() - 0.5) * 170;
+            double longitude1 = (random.nextDouble() - 0.5) * 360;
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            double length = 1000 + random.nextDouble() * 300000;
+            double latitude2 = Math.max(-89, Math.min(89,
+                    latitude1 + length * Math.cos(bearing) / degreeDistance));
+            double longitude2 = longitude1
+                    + length * Math.sin(bearing) / (degreeDistance * Math.cos(Math.toRadians(latitude1)));
+            longitude2 = (longitude2 + 540) % 360 - 180;
+            double distance = 50 + random.nextDouble() * 20000;
+            GeofenceGeometry geofenceGeometry = new GeofencePolyline(
+                    "LINESTRING (" + latitude1 + " " + longitude1 + ", " + latitude2 + " " + longitude2 + ")",
+                    distance);
+
+            for (int k = 0; k < 50; k++) {
+                double t = random.nextDouble() * 1.2 - 0.1;
+                double offset = (random.nextDouble() - 0.5) * 4 * distance;
+                double deltaLongitude = longitude2 - longitude1;
+                if (deltaLongitude > 180) {
+                    deltaLongitude -= 360;
+                } else if (deltaLongitude < -180) {
+                    deltaLongitude += 360;
+                }
+                double latitude = latitude1 + t * (latitude2 - latitude1) + offset * Math.sin(bearing) / degreeDistance;
+                double longitude = longitude1 + t * deltaLongitude
+                        - offset * Math.cos(bearing) / (degreeDistance * Math.cos(Math.toRadians(latitude1)));
+                if (Math.abs(latitude) >= 90) {
+                    continue;
+                }
+                longitude = (longitude + 540) % 360 - 180;
+                boolean expected = DistanceCalculator.distanceToLine(
+                        latitude, longitude, latitude1, longitude1, latitude2, longitude2) <= distance;
+                assertEquals(expected, geofenceGeometry.containsPoint(latitude, longitude));
+            }
+        }
+    }
+
 }
@@ -0,0 +1,29 @@
+package org.traccar.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void testFormat() {
+        Histogram histogram = new Histogram();
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(50));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        histogram.record(TimeUnit.SECONDS.toNanos(20));
+
+        StringBuilder result = new StringBuilder();
+        histogram.format(result, "test", "handler=\"TimeHandler\"");
+        String text = result.toString();
+
+        assertTrue(text.contains("test_bucket{handler=\"TimeHandler\",le=\"1.0E-4\"} 1\n"));
+        assertTrue(text.contains("test_bucket{handler=\"TimeHandler\",le=\"0.005\"} 2\n"));
+        assertTrue(text.contains("test_bucket{handler=\"TimeHandler\",le=\"10.0\"} 2\n"));
+        assertTrue(text.contains("test_bucket{handler=\"TimeHandler\",le=\"+Inf\"} 3\n"));
+        assertTrue(text.contains("test_count{handler=\"TimeHandler\"} 3\n"));
+    }
+
+}
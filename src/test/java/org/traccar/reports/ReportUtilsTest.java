@@ -9,16 +9,19 @@ import org.traccar.database.DeviceManager;
 import org.traccar.database.IdentityManager;
 import org.traccar.helper.model.PositionUtil;
 import org.traccar.model.Device;
+import org.traccar.model.MotionSegment;
 import org.traccar.model.Position;
 import org.traccar.reports.common.ReportUtils;
 import org.traccar.reports.model.StopReportItem;
 import org.traccar.reports.model.TripReportItem;
 import org.traccar.reports.common.TripsConfig;
 import org.traccar.storage.Storage;
+import org.traccar.storage.TestStorage;
 
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
@@ -420,4 +423,60 @@ public class ReportUtilsTest extends BaseTest {
         assertEquals(1200000, itemStop.getDuration());
     }
 
+    private MotionSegment segment(String type, Position start, Position end) {
+        MotionSegment segment = new MotionSegment();
+        segment.setDeviceId(1);
+        segment.setType(type);
+        segment.setStartPositionId(start.getId());
+        segment.setEndPositionId(end.getId());
+        segment.setStartTime(start.getFixTime());
+        segment.setEndTime(end.getFixTime());
+        return segment;
+    }
+
+    @Test
+    public void testTripsWithMissingSegment() throws Exception {
+
+        TestStorage storage = new TestStorage();
+        List<Position> data = new ArrayList<>();
+        double distance = 0;
+        for (int i = 0; i < 40; i++) {
+            double speed = i >= 10 && i < 17 || i >= 25 && i < 32 ? 10 : 0;
+            distance += speed * 100;
+            Position position = position(String.format("2016-01-01 00:%02d:00.000", i), speed, distance);
+            position.setDeviceId(1);
+            storage.addObject(position, null);
+            data.add(position);
+        }
+
+        List<MotionSegment> segments = List.of(
+                segment(MotionSegment.TYPE_STOP, data.get(0), data.get(10)),
+                segment(MotionSegment.TYPE_STOP, data.get(17), data.get(25)),
+                segment(MotionSegment.TYPE_TRIP, data.get(25), data.get(32)));
+
+        TripsConfig tripsConfig = new TripsConfig(500, 300000, 180000, 900000, false, false, 0.01);
+        ReportUtils reportUtils = new ReportUtils(
+                mock(Config.class), storage, mock(PermissionsService.class), mockIdentityManager(),
+                mock(DeviceManager.class), tripsConfig, mock(VelocityEngine.class), null);
+
+        Collection<TripReportItem> trips = reportUtils.getTripsAndStops(
+                segments, 1, date("2016-01-01 00:00:00.000"), date("2016-01-01 00:39:00.000"),
+                false, TripReportItem.class);
+
+        assertEquals(2, trips.size());
+        Iterator<TripReportItem> iterator = trips.iterator();
+        TripReportItem itemTrip = iterator.next();
+        assertEquals(date("2016-01-01 00:10:00.000"), itemTrip.getStartTime());
+        assertEquals(date("2016-01-01 00:17:00.000"), itemTrip.getEndTime());
+        itemTrip = iterator.next();
+        assertEquals(date("2016-01-01 00:25:00.000"), itemTrip.getStartTime());
+        assertEquals(date("2016-01-01 00:32:00.000"), itemTrip.getEndTime());
+
+        Collection<StopReportItem> stops = reportUtils.getTripsAndStops(
+                segments, 1, date("2016-01-01 00:00:00.000"), date("2016-01-01 00:39:00.000"),
+                false, StopReportItem.class);
+
+        assertEquals(3, stops.size());
+    }
+
 }
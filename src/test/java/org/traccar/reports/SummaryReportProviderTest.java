@@ -0,0 +1,113 @@
+package org.traccar.reports;
+
+import org.junit.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.database.IdentityManager;
+import org.traccar.model.Device;
+import org.traccar.model.Position;
+import org.traccar.reports.common.DailySummaryManager;
+import org.traccar.reports.common.ReportUtils;
+import org.traccar.reports.model.SummaryReportItem;
+import org.traccar.storage.TestStorage;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SummaryReportProviderTest {
+
+    private static final long DAY = 86400000L;
+    private static final long START = 1640995200000L;
+    private static final long STEP = 600000L;
+
+    private TestStorage createStorage() {
+        TestStorage storage = new TestStorage();
+        Random random = new Random(1);
+        double distance = 0;
+        double fuel = 100;
+        for (long time = START; time < START + 5 * DAY; time += STEP) {
+            Position position = new Position();
+            position.setDeviceId(1);
+            position.setTime(new Date(time));
+            position.setSpeed(random.nextInt(100));
+            distance += random.nextInt(1000);
+            fuel -= random.nextInt(10) * 0.01;
+            position.set(Position.KEY_TOTAL_DISTANCE, distance);
+            position.set(Position.KEY_ODOMETER, 100000 + distance);
+            position.set(Position.KEY_HOURS, time - START);
+            position.set(Position.KEY_FUEL_LEVEL, fuel);
+            storage.addObject(position, null);
+        }
+        return storage;
+    }
+
+    private Config createConfig(boolean materialize) {
+        Config config = new Config();
+        config.setString(Keys.REPORT_SUMMARY_MATERIALIZE, String.valueOf(materialize));
+        return config;
+    }
+
+    private SummaryReportProvider createProvider(TestStorage storage, boolean materialize) {
+        Config config = createConfig(materialize);
+        var device = mock(Device.class);
+        when(device.getName()).thenReturn("test");
+        var identityManager = mock(IdentityManager.class);
+        when(identityManager.getById(anyLong())).thenReturn(device);
+        ReportUtils reportUtils = new ReportUtils(config, storage, null, identityManager, null, null, null, null);
+        return new SummaryReportProvider(
+                config, reportUtils, null, null, storage, new DailySummaryManager(config, storage), identityManager);
+    }
+
+    private void verifyEquivalent(
+            TestStorage storage, Date from, Date to, TimeZone timeZone) throws Exception {
+        List<SummaryReportItem> expected = new ArrayList<>(
+                createProvider(storage, false).calculateSummaryResults(1, from, to, timeZone));
+        List<SummaryReportItem> actual = new ArrayList<>(
+                createProvider(storage, true).calculateSummaryResults(1, from, to, timeZone));
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            SummaryReportItem expectedItem = expected.get(i);
+            SummaryReportItem actualItem = actual.get(i);
+            assertEquals(expectedItem.getStartTime(), actualItem.getStartTime());
+            assertEquals(expectedItem.getEndTime(), actualItem.getEndTime());
+            assertEquals(expectedItem.getDistance(), actualItem.getDistance(), 0.01);
+            assertEquals(expectedItem.getAverageSpeed(), actualItem.getAverageSpeed(), 0.01);
+            assertEquals(expectedItem.getMaxSpeed(), actualItem.getMaxSpeed(), 0.01);
+            assertEquals(expectedItem.getSpentFuel(), actualItem.getSpentFuel(), 0.01);
+            assertEquals(expectedItem.getEngineHours(), actualItem.getEngineHours());
+            assertEquals(expectedItem.getStartOdometer(), actualItem.getStartOdometer(), 0.01);
+            assertEquals(expectedItem.getEndOdometer(), actualItem.getEndOdometer(), 0.01);
+        }
+    }
+
+    @Test
+    public void testRollupEquivalence() throws Exception {
+        TestStorage storage = createStorage();
+        TimeZone utc = TimeZone.getTimeZone("UTC");
+
+        Date from = new Date(START + 5 * STEP);
+        Date to = new Date(START + 5 * DAY - 7 * STEP);
+
+        verifyEquivalent(storage, from, to, null);
+        verifyEquivalent(storage, from, to, utc);
+
+        DailySummaryManager manager = new DailySummaryManager(createConfig(true), storage);
+        manager.rebuild(1, new Date(START + DAY), new Date(START + 2 * DAY - 1));
+        manager.rebuild(1, new Date(START + 3 * DAY), new Date(START + 4 * DAY - 1));
+
+        verifyEquivalent(storage, from, to, null);
+        verifyEquivalent(storage, from, to, utc);
+        verifyEquivalent(storage, new Date(START), new Date(START + 5 * DAY - 1), utc);
+        verifyEquivalent(storage, new Date(START + DAY), new Date(START + 2 * DAY - 1), null);
+    }
+
+}
@@ -0,0 +1,141 @@
+package org.traccar.reports.common;
+
+import org.junit.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.model.DailySummary;
+import org.traccar.model.Position;
+import org.traccar.storage.TestStorage;
+import org.traccar.storage.query.Columns;
+import org.traccar.storage.query.Order;
+import org.traccar.storage.query.Request;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class DailySummaryManagerTest {
+
+    private static final long DAY = 86400000L;
+    private static final long START = 1640995200000L;
+    private static final long STEP = 3600000L;
+
+    private DailySummaryManager createManager(TestStorage storage) {
+        Config config = new Config();
+        config.setString(Keys.REPORT_SUMMARY_MATERIALIZE, "true");
+        return new DailySummaryManager(config, storage, Runnable::run);
+    }
+
+    private Position createPosition(long time, double speed, double distance) {
+        Position position = new Position();
+        position.setDeviceId(1);
+        position.setTime(new Date(time));
+        position.setSpeed(speed);
+        position.set(Position.KEY_TOTAL_DISTANCE, distance);
+        return position;
+    }
+
+    private void addPositions(TestStorage storage, int days) {
+        for (int i = 0; i < days * 24; i++) {
+            storage.addObject(createPosition(START + i * STEP, i % 24, i * 1000.0), null);
+        }
+    }
+
+    private List<DailySummary> getSummaries(TestStorage storage) {
+        return storage.getObjects(DailySummary.class, new Request(new Columns.All(), null, new Order("dayStart")));
+    }
+
+    @Test
+    public void testRebuild() throws Exception {
+        TestStorage storage = new TestStorage();
+        addPositions(storage, 3);
+
+        createManager(storage).rebuild(1, new Date(START), new Date(START + 3 * DAY - 1));
+
+        List<DailySummary> summaries = getSummaries(storage);
+        assertEquals(3, summaries.size());
+        DailySummary summary = summaries.get(1);
+        assertEquals(new Date(START + DAY), summary.getDayStart());
+        assertEquals(new Date(START + DAY), summary.getStartTime());
+        assertEquals(new Date(START + 2 * DAY - STEP), summary.getEndTime());
+        assertEquals(24000.0, summary.getStartTotalDistance(), 0.1);
+        assertEquals(47000.0, summary.getEndTotalDistance(), 0.1);
+        assertEquals(23.0, summary.getMaxSpeed(), 0.1);
+        assertEquals(24, summary.getPositionCount());
+    }
+
+    @Test
+    public void testUpdatePosition() throws Exception {
+        TestStorage storage = new TestStorage();
+        DailySummaryManager manager = createManager(storage);
+
+        for (int i = 0; i < 30; i++) {
+            Position position = createPosition(START + i * STEP, i, i * 1000.0);
+            storage.addObject(position, null);
+            manager.updatePosition(position);
+        }
+
+        List<DailySummary> summaries = getSummaries(storage);
+        assertEquals(1, summaries.size());
+        assertEquals(23000.0, summaries.get(0).getEndTotalDistance(), 0.1);
+        assertEquals(23.0, summaries.get(0).getMaxSpeed(), 0.1);
+    }
+
+    @Test
+    public void testLatePositions() throws Exception {
+        TestStorage storage = new TestStorage();
+        DailySummaryManager manager = createManager(storage);
+
+        for (int i = 0; i < 30; i++) {
+            Position position = createPosition(START + i * STEP, i % 24, i * 1000.0);
+            storage.addObject(position, null);
+            manager.updatePosition(position);
+        }
+
+        Position late = createPosition(START + STEP / 2, 50, 500.0);
+        storage.addObject(late, null);
+        manager.updatePosition(late);
+
+        List<DailySummary> summaries = getSummaries(storage);
+        assertEquals(1, summaries.size());
+        assertEquals(50.0, summaries.get(0).getMaxSpeed(), 0.1);
+        assertEquals(25, summaries.get(0).getPositionCount());
+
+        late = createPosition(START + DAY + STEP / 2, 60, 24500.0);
+        storage.addObject(late, null);
+        manager.updatePosition(late);
+
+        Position next = createPosition(START + 2 * DAY, 0, 48000.0);
+        storage.addObject(next, null);
+        manager.updatePosition(next);
+
+        summaries = getSummaries(storage);
+        assertEquals(2, summaries.size());
+        assertEquals(60.0, summaries.get(1).getMaxSpeed(), 0.1);
+        assertEquals(7, summaries.get(1).getPositionCount());
+    }
+
+    @Test
+    public void testStreamGaps() throws Exception {
+        TestStorage storage = new TestStorage();
+        addPositions(storage, 5);
+        DailySummaryManager manager = createManager(storage);
+        manager.rebuild(1, new Date(START + DAY), new Date(START + 2 * DAY - 1));
+        manager.rebuild(1, new Date(START + 3 * DAY), new Date(START + 4 * DAY - 1));
+
+        List<Position> positions = new ArrayList<>();
+        manager.streamPositions(1, new Date(START + STEP), new Date(START + 5 * DAY - STEP - 1), positions::add);
+
+        assertEquals(23 + 2 + 24 + 2 + 23, positions.size());
+        assertEquals(1000.0, positions.get(0).getDouble(Position.KEY_TOTAL_DISTANCE), 0.1);
+        assertEquals(118000.0, positions.get(positions.size() - 1).getDouble(Position.KEY_TOTAL_DISTANCE), 0.1);
+        for (int i = 1; i < positions.size(); i++) {
+            assertFalse(positions.get(i).getFixTime().before(positions.get(i - 1).getFixTime()));
+        }
+        assertEquals(23.0, positions.stream().mapToDouble(Position::getSpeed).max().orElse(0), 0.1);
+    }
+
+}
@@ -0,0 +1,107 @@
+package org.traccar.reports.common;
+
+import org.junit.Test;
+import org.traccar.handler.events.MotionEventHandler;
+import org.traccar.model.Position;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class MotionSegmentDetectorTest {
+
+    private static final long START = 1451606400000L;
+    private static final long MINUTE = 60000L;
+
+    private static final class Segment {
+
+        private final Position start;
+        private final Position end;
+        private final double maxSpeed;
+
+        private Segment(Position start, Position end, double maxSpeed) {
+            this.start = start;
+            this.end = end;
+            this.maxSpeed = maxSpeed;
+        }
+
+    }
+
+    private Position position(int minute, double speed, double totalDistance) {
+        Position position = new Position();
+        position.setDeviceId(1);
+        position.setTime(new Date(START + minute * MINUTE));
+        position.setValid(true);
+        position.setSpeed(speed);
+        position.set(Position.KEY_TOTAL_DISTANCE, totalDistance);
+        return position;
+    }
+
+    private List<Position> createData() {
+        List<Position> data = new ArrayList<>();
+        data.add(position(0, 0, 0));
+        data.add(position(1, 0, 0));
+        data.add(position(2, 10, 0));
+        data.add(position(3, 10, 1000));
+        data.add(position(4, 10, 2000));
+        data.add(position(5, 0, 3000));
+        data.add(position(6, 0, 3000));
+        data.add(position(7, 0, 3000));
+        return data;
+    }
+
+    private MotionSegmentDetector createDetector(boolean trips, List<Segment> segments) {
+        TripsConfig tripsConfig = new TripsConfig(500, 300000, 180000, 900000, false, false, 0.01);
+        return new MotionSegmentDetector(
+                new MotionEventHandler(null, null, tripsConfig), tripsConfig, trips,
+                (start, end, maxSpeed) -> segments.add(new Segment(start, end, maxSpeed)));
+    }
+
+    @Test
+    public void testTrips() {
+        List<Position> data = createData();
+        List<Segment> segments = new ArrayList<>();
+        MotionSegmentDetector detector = createDetector(true, segments);
+
+        data.forEach(detector);
+        assertSame(data.get(7), detector.getLast());
+        assertEquals(0, segments.size());
+
+        detector.finish();
+        assertNull(detector.getLast());
+        assertEquals(1, segments.size());
+        assertSame(data.get(2), segments.get(0).start);
+        assertSame(data.get(5), segments.get(0).end);
+        assertEquals(10, segments.get(0).maxSpeed, 0.01);
+    }
+
+    @Test
+    public void testStops() {
+        List<Position> data = createData();
+        List<Segment> segments = new ArrayList<>();
+        MotionSegmentDetector detector = createDetector(false, segments);
+
+        data.forEach(detector);
+        assertEquals(1, segments.size());
+        assertSame(data.get(0), segments.get(0).start);
+        assertSame(data.get(2), segments.get(0).end);
+
+        detector.finish();
+        assertEquals(2, segments.size());
+        assertSame(data.get(5), segments.get(1).start);
+        assertSame(data.get(7), segments.get(1).end);
+    }
+
+    @Test
+    public void testFinishEmpty() {
+        List<Segment> segments = new ArrayList<>();
+        MotionSegmentDetector detector = createDetector(true, segments);
+        detector.finish();
+        assertEquals(0, segments.size());
+    }
+
+}
@@ -0,0 +1,147 @@
+package org.traccar.reports.common;
+
+import org.junit.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.handler.events.MotionEventHandler;
+import org.traccar.model.MotionSegment;
+import org.traccar.model.Position;
+import org.traccar.storage.StorageException;
+import org.traccar.storage.TestStorage;
+import org.traccar.storage.query.Request;
+
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class MotionSegmentManagerTest {
+
+    private static final long START = 1451606400000L;
+    private static final long MINUTE = 60000L;
+
+    private static final double[] SPEEDS = {0, 0, 10, 10, 10, 0, 0, 0, 0, 0, 0, 0};
+    private static final double[] DISTANCES = {0, 0, 0, 1000, 2000, 3000, 3000, 3000, 3000, 3000, 3000, 3000};
+    private static final int LIVE_COUNT = 10;
+
+    private MotionSegmentManager createManager(TestStorage storage) {
+        Config config = new Config();
+        config.setString(Keys.REPORT_TRIP_MATERIALIZE, "true");
+        TripsConfig tripsConfig = new TripsConfig(500, 300000, 180000, 900000, false, false, 0.01);
+        return new MotionSegmentManager(
+                config, storage, tripsConfig, new MotionEventHandler(null, null, tripsConfig), Runnable::run);
+    }
+
+    private Position addPosition(TestStorage storage, int minute, double speed) {
+        Position position = new Position();
+        position.setDeviceId(1);
+        position.setTime(new Date(START + minute * MINUTE));
+        position.setValid(true);
+        position.setSpeed(speed);
+        position.set(Position.KEY_TOTAL_DISTANCE, DISTANCES[minute]);
+        storage.addObject(position, null);
+        return position;
+    }
+
+    private Position addPosition(TestStorage storage, int minute) {
+        return addPosition(storage, minute, SPEEDS[minute]);
+    }
+
+    private List<MotionSegment> getSegments(MotionSegmentManager manager, String type) throws StorageException {
+        return manager.getSegments(1, new Date(START), new Date(START + 60 * MINUTE)).stream()
+                .filter(segment -> segment.getType().equals(type))
+                .collect(Collectors.toList());
+    }
+
+    private void assertSegment(MotionSegment segment, int startMinute, int endMinute) {
+        assertEquals(START + startMinute * MINUTE, segment.getStartTime().getTime());
+        assertEquals(START + endMinute * MINUTE, segment.getEndTime().getTime());
+    }
+
+    private void assertSegments(MotionSegmentManager manager) throws StorageException {
+        List<MotionSegment> stops = getSegments(manager, MotionSegment.TYPE_STOP);
+        assertEquals(1, stops.size());
+        assertSegment(stops.get(0), 0, 2);
+        List<MotionSegment> trips = getSegments(manager, MotionSegment.TYPE_TRIP);
+        assertEquals(1, trips.size());
+        assertSegment(trips.get(0), 2, 5);
+    }
+
+    @Test
+    public void testLiveDetection() throws Exception {
+        TestStorage storage = new TestStorage();
+        MotionSegmentManager manager = createManager(storage);
+        for (int i = 0; i < LIVE_COUNT; i++) {
+            manager.updatePosition(addPosition(storage, i));
+        }
+        assertSegments(manager);
+    }
+
+    @Test
+    public void testRestore() throws Exception {
+        TestStorage storage = new TestStorage();
+        MotionSegmentManager manager = createManager(storage);
+        for (int i = 0; i < 5; i++) {
+            manager.updatePosition(addPosition(storage, i));
+        }
+        manager = createManager(storage);
+        for (int i = 5; i < LIVE_COUNT; i++) {
+            manager.updatePosition(addPosition(storage, i));
+        }
+        assertSegments(manager);
+    }
+
+    @Test
+    public void testLatePosition() throws Exception {
+        TestStorage storage = new TestStorage();
+        MotionSegmentManager manager = createManager(storage);
+        for (int i = 0; i < LIVE_COUNT; i++) {
+            if (i != 3) {
+                manager.updatePosition(addPosition(storage, i));
+            }
+        }
+        assertEquals(10.0, getSegments(manager, MotionSegment.TYPE_TRIP).get(0).getMaxSpeed(), 0.1);
+
+        manager.updatePosition(addPosition(storage, 3, 20));
+        assertSegments(manager);
+        assertEquals(20.0, getSegments(manager, MotionSegment.TYPE_TRIP).get(0).getMaxSpeed(), 0.1);
+    }
+
+    @Test
+    public void testRecompute() throws Exception {
+        TestStorage storage = new TestStorage();
+        MotionSegmentManager manager = createManager(storage);
+        for (int i = 0; i < LIVE_COUNT; i++) {
+            manager.updatePosition(addPosition(storage, i));
+        }
+        manager.recompute(1, new Date(START), new Date(START + 60 * MINUTE));
+        assertSegments(manager);
+    }
+
+    @Test
+    public void testRecomputeWithLivePositions() throws Exception {
+        MotionSegmentManager[] manager = new MotionSegmentManager[1];
+        TestStorage storage = new TestStorage() {
+            private boolean received;
+
+            @Override
+            public <T> void streamObjects(Class<T> clazz, Request request, Consumer<T> consumer) {
+                if (!received) {
+                    received = true;
+                    manager[0].updatePosition(addPosition(this, LIVE_COUNT));
+                }
+                super.streamObjects(clazz, request, consumer);
+            }
+        };
+        manager[0] = createManager(storage);
+        for (int i = 0; i < LIVE_COUNT; i++) {
+            manager[0].updatePosition(addPosition(storage, i));
+        }
+        manager[0].recompute(1, new Date(START + 3 * MINUTE), new Date(START + 9 * MINUTE));
+        manager[0].updatePosition(addPosition(storage, LIVE_COUNT + 1));
+        assertSegments(manager[0]);
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.traccar.reports.common;
+
+import org.junit.Test;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.storage.StorageException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReportExecutorTest {
+
+    private ReportExecutor createExecutor(int parallelism) {
+        Config config = new Config();
+        config.setString(Keys.REPORT_PARALLELISM, String.valueOf(parallelism));
+        return new ReportExecutor(config);
+    }
+
+    @Test
+    public void testOrder() throws StorageException {
+        List<Long> deviceIds = new ArrayList<>();
+        for (long i = 20; i > 0; i--) {
+            deviceIds.add(i);
+        }
+        for (int parallelism : new int[] {1, 4}) {
+            Map<Long, Long> result = createExecutor(parallelism).execute(deviceIds, deviceId -> {
+                try {
+                    Thread.sleep(deviceId);
+                } catch (InterruptedException e) {
+                    throw new StorageException(e);
+                }
+                return deviceId * 10;
+            });
+            assertEquals(deviceIds, new ArrayList<>(result.keySet()));
+            for (long deviceId : deviceIds) {
+                assertEquals(deviceId * 10, (long) result.get(deviceId));
+            }
+        }
+    }
+
+    @Test(expected = StorageException.class)
+    public void testException() throws StorageException {
+        createExecutor(4).execute(List.of(1L, 2L, 3L), deviceId -> {
+            if (deviceId == 2) {
+                throw new StorageException("test");
+            }
+            return deviceId;
+        });
+    }
+
+}
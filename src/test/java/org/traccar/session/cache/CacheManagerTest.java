@@ -0,0 +1,82 @@
+package org.traccar.session.cache;
+
+import org.junit.Test;
+import org.traccar.model.Device;
+import org.traccar.model.Driver;
+import org.traccar.model.Position;
+import org.traccar.storage.Storage;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CacheManagerTest {
+
+    @Test
+    public void testReloadConcurrentWithReads() throws Exception {
+
+        Device device = new Device();
+        device.setId(1);
+        device.setPositionId(10);
+
+        Driver driver = new Driver();
+        driver.setId(2);
+        driver.setUniqueId("driver");
+
+        Position stored = new Position();
+        stored.setId(10);
+        stored.setDeviceId(1);
+        stored.setFixTime(new Date(1000));
+
+        Storage storage = mock(Storage.class);
+        when(storage.getObject(eq(Device.class), any())).thenReturn(device);
+        when(storage.getObject(eq(Position.class), any())).thenReturn(stored);
+        when(storage.getObjects(eq(Driver.class), any())).thenReturn(List.of(driver));
+
+        CacheManager cacheManager = new CacheManager(storage);
+        cacheManager.addDevice(1);
+
+        Position latest = new Position();
+        latest.setDeviceId(1);
+        latest.setFixTime(new Date(2000));
+        cacheManager.updatePosition(latest);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    assertEquals(1, cacheManager.getDeviceObjects(1, Driver.class).size());
+                    assertEquals(1, cacheManager.getDeviceObjectIds(1, Driver.class).size());
+                    assertNotNull(cacheManager.getObject(Device.class, 1));
+                    assertNotNull(cacheManager.findDriverByUniqueId(1, "driver"));
+                    assertSame(latest, cacheManager.getPosition(1));
+                }
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 1000 && error.get() == null; i++) {
+            cacheManager.invalidate(Driver.class, 2);
+        }
+        running.set(false);
+        reader.join();
+
+        assertNull(error.get());
+        assertSame(latest, cacheManager.getPosition(1));
+        assertNotNull(cacheManager.getObject(Driver.class, 2));
+
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.traccar.session.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PayloadCacheTest {
+
+    public static class Value {
+
+        private String name;
+
+        public Value(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Value;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+
+    }
+
+    @Test
+    public void testIdentity() throws Exception {
+        PayloadCache payloadCache = new PayloadCache(new ObjectMapper());
+
+        Value first = new Value("first");
+        Value second = new Value("second");
+        assertEquals("{\"name\":\"first\"}", payloadCache.getPayload(first));
+        assertEquals("{\"name\":\"second\"}", payloadCache.getPayload(second));
+
+        first.setName("updated");
+        assertEquals("{\"name\":\"first\"}", payloadCache.getPayload(first));
+        payloadCache.invalidate(second);
+        assertEquals("{\"name\":\"first\"}", payloadCache.getPayload(first));
+        payloadCache.invalidate(first);
+        assertEquals("{\"name\":\"updated\"}", payloadCache.getPayload(first));
+    }
+
+}
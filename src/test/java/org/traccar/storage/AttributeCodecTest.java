@@ -0,0 +1,53 @@
+package org.traccar.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.traccar.model.Position;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AttributeCodecTest {
+
+    @Test
+    public void testEncodeDecode() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put(Position.KEY_IGNITION, true);
+        attributes.put(Position.KEY_MOTION, false);
+        attributes.put(Position.KEY_SATELLITES, 7);
+        attributes.put(Position.KEY_ODOMETER, 12345678901L);
+        attributes.put(Position.KEY_POWER, 12.6);
+        attributes.put(Position.KEY_DRIVER_UNIQUE_ID, "driver");
+        attributes.put(Position.PREFIX_ADC + 1, -3);
+        attributes.put("custom", "\u00e9t\u00e9");
+        attributes.put("list", List.of(1, 2));
+
+        byte[] data = AttributeCodec.encode(objectMapper, attributes);
+        Map<String, Object> decoded = AttributeCodec.decode(objectMapper, data);
+
+        assertEquals(attributes, decoded);
+        assertEquals(List.copyOf(attributes.keySet()), List.copyOf(decoded.keySet()));
+        assertTrue(data.length < objectMapper.writeValueAsBytes(attributes).length);
+    }
+
+    @Test
+    public void testJsonCompatibleTypes() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put(Position.KEY_INDEX, 5L);
+        attributes.put(Position.KEY_DISTANCE, 0.0);
+
+        Map<String, Object> decoded = AttributeCodec.decode(
+                objectMapper, AttributeCodec.encode(objectMapper, attributes));
+
+        assertEquals(objectMapper.readValue(objectMapper.writeValueAsString(attributes), Map.class), decoded);
+    }
+
+}
@@ -0,0 +1,145 @@
+package org.traccar.storage;
+
+import org.traccar.model.BaseModel;
+import org.traccar.storage.query.Condition;
+import org.traccar.storage.query.Request;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Simple in-memory object storage for tests. Supports comparison and list conditions, ordering and limits.
+ * Permissions are handled by {@link MemoryStorage}.
+ */
+public class TestStorage extends MemoryStorage {
+
+    private final Map<Class<?>, List<Object>> objects = new HashMap<>();
+    private long nextId = 1;
+
+    private List<Object> getList(Class<?> clazz) {
+        return objects.computeIfAbsent(clazz, key -> new ArrayList<>());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparable getValue(Object object, String column) {
+        String name = "get" + Character.toUpperCase(column.charAt(0)) + column.substring(1);
+        try {
+            Object value = object.getClass().getMethod(name).invoke(object);
+            if (value instanceof Date) {
+                return ((Date) value).getTime();
+            } else if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+            return (Comparable) value;
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static Comparable<?> normalize(Object value) {
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return (Comparable<?>) value;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object object, String column, Object value) {
+        Comparable left = getValue(object, column);
+        Comparable right = normalize(value);
+        if (left instanceof Long && right instanceof Double) {
+            left = ((Long) left).doubleValue();
+        } else if (left instanceof Double && right instanceof Long) {
+            right = ((Long) right).doubleValue();
+        }
+        return left.compareTo(right);
+    }
+
+    private static boolean matches(Object object, Condition condition) {
+        if (condition == null) {
+            return true;
+        } else if (condition instanceof Condition.Compare) {
+            var compare = (Condition.Compare) condition;
+            int result = compare(object, compare.getColumn(), compare.getValue());
+            switch (compare.getOperator()) {
+                case "=":
+                    return result == 0;
+                case "<":
+                    return result < 0;
+                case "<=":
+                    return result <= 0;
+                case ">":
+                    return result > 0;
+                case ">=":
+                    return result >= 0;
+                default:
+                    throw new UnsupportedOperationException(compare.getOperator());
+            }
+        } else if (condition instanceof Condition.Between) {
+            var between = (Condition.Between) condition;
+            return compare(object, between.getColumn(), between.getFromValue()) >= 0
+                    && compare(object, between.getColumn(), between.getToValue()) <= 0;
+        } else if (condition instanceof Condition.In) {
+            var in = (Condition.In) condition;
+            return in.getValues().stream().anyMatch(value -> compare(object, in.getColumn(), value) == 0);
+        } else if (condition instanceof Condition.And) {
+            var and = (Condition.And) condition;
+            return matches(object, and.getFirst()) && matches(object, and.getSecond());
+        } else if (condition instanceof Condition.Or) {
+            var or = (Condition.Or) condition;
+            return matches(object, or.getFirst()) || matches(object, or.getSecond());
+        }
+        throw new UnsupportedOperationException(condition.getClass().getSimpleName());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized <T> List<T> getObjects(Class<T> clazz, Request request) {
+        Stream<Object> stream = getList(clazz).stream().filter(object -> matches(object, request.getCondition()));
+        if (request.getOrder() != null) {
+            String column = request.getOrder().getColumn();
+            Comparator<Object> comparator = Comparator.comparing(object -> getValue(object, column));
+            stream = stream.sorted(request.getOrder().getDescending() ? comparator.reversed() : comparator);
+        }
+        if (request.getLimit() != null) {
+            stream = stream.limit(request.getLimit().getValue());
+        }
+        return stream.map(object -> (T) object).collect(Collectors.toList());
+    }
+
+    @Override
+    public <T> void streamObjects(Class<T> clazz, Request request, Consumer<T> consumer) {
+        getObjects(clazz, request).forEach(consumer);
+    }
+
+    @Override
+    public synchronized <T> long addObject(T entity, Request request) {
+        long id = 0;
+        if (entity instanceof BaseModel) {
+            id = nextId++;
+            ((BaseModel) entity).setId(id);
+        }
+        getList(entity.getClass()).add(entity);
+        return id;
+    }
+
+    @Override
+    public synchronized <T> void updateObject(T entity, Request request) {
+    }
+
+    @Override
+    public synchronized void removeObject(Class<?> clazz, Request request) {
+        getList(clazz).removeIf(object -> matches(object, request.getCondition()));
+    }
+
+}
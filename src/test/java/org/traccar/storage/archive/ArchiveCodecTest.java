@@ -0,0 +1,82 @@
+package org.traccar.storage.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.traccar.model.CellTower;
+import org.traccar.model.Network;
+import org.traccar.model.Position;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ArchiveCodecTest {
+
+    private Position createPosition(long id, long time, double latitude, double longitude) {
+        Position position = new Position("test");
+        position.setId(id);
+        position.setDeviceId(1);
+        position.setFixTime(new Date(time));
+        position.setDeviceTime(new Date(time - 1000));
+        position.setServerTime(new Date(time + 2500));
+        position.setValid(true);
+        position.setLatitude(latitude);
+        position.setLongitude(longitude);
+        position.setSpeed(12.5);
+        position.setCourse(1.0 / 3);
+        return position;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ArchiveCodec codec = new ArchiveCodec(new ObjectMapper());
+
+        List<Position> positions = new ArrayList<>();
+        Position first = createPosition(100, 1640995200000L, 48.8583701, 2.2944813);
+        first.setAddress("Champ de Mars");
+        first.set(Position.KEY_IGNITION, true);
+        first.set(Position.KEY_ODOMETER, 123456789012L);
+        first.set(Position.KEY_BATTERY_LEVEL, 87);
+        first.set(Position.KEY_FUEL_LEVEL, 42.7);
+        first.set(Position.KEY_DRIVER_UNIQUE_ID, "abc");
+        first.setNetwork(new Network(CellTower.from(250, 1, 100, 200)));
+        positions.add(first);
+        Position second = createPosition(102, 1640995230000L, -33.8567844, 151.2152967);
+        second.set(Position.KEY_IGNITION, false);
+        second.setValid(false);
+        positions.add(second);
+
+        byte[] data = codec.encode(positions);
+
+        List<Position> decoded = new ArrayList<>();
+        codec.decode(1, ByteBuffer.wrap(data), decoded::add);
+
+        assertEquals(2, decoded.size());
+        for (int i = 0; i < positions.size(); i++) {
+            Position expected = positions.get(i);
+            Position actual = decoded.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getDeviceId(), actual.getDeviceId());
+            assertEquals(expected.getProtocol(), actual.getProtocol());
+            assertEquals(expected.getFixTime(), actual.getFixTime());
+            assertEquals(expected.getDeviceTime(), actual.getDeviceTime());
+            assertEquals(expected.getServerTime(), actual.getServerTime());
+            assertEquals(expected.getValid(), actual.getValid());
+            assertEquals(expected.getLatitude(), actual.getLatitude(), 0);
+            assertEquals(expected.getLongitude(), actual.getLongitude(), 0);
+            assertEquals(expected.getSpeed(), actual.getSpeed(), 0);
+            assertEquals(expected.getCourse(), actual.getCourse(), 0);
+            assertEquals(expected.getAddress(), actual.getAddress());
+            assertEquals(expected.getAttributes(), actual.getAttributes());
+        }
+        assertEquals(
+                first.getNetwork().getCellTowers().iterator().next().getCellId(),
+                decoded.get(0).getNetwork().getCellTowers().iterator().next().getCellId());
+        assertNull(decoded.get(1).getNetwork());
+    }
+
+}
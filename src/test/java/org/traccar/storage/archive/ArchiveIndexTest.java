@@ -0,0 +1,61 @@
+package org.traccar.storage.archive;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ArchiveIndexTest {
+
+    private static final long DAY = 86400000L;
+
+    @Test
+    public void testFindDays() {
+        ArchiveIndex index = ArchiveIndex.EMPTY
+                .withDay(2 * DAY, 10, 2 * DAY + 100, 2 * DAY + 200, 11, 20)
+                .withDay(0, 10, 500, 1000, 1, 10)
+                .withDay(5 * DAY, 10, 5 * DAY, 6 * DAY - 1, 15, 30);
+
+        assertArrayEquals(new long[] {0, 2 * DAY, 5 * DAY}, index.getDays());
+
+        assertArrayEquals(new long[] {0, 2 * DAY, 5 * DAY}, index.findDays(0, 10 * DAY));
+        assertArrayEquals(new long[] {0}, index.findDays(1000, 1000));
+        assertArrayEquals(new long[] {}, index.findDays(1001, 2 * DAY + 99));
+        assertArrayEquals(new long[] {2 * DAY}, index.findDays(2 * DAY, 3 * DAY));
+        assertArrayEquals(new long[] {2 * DAY, 5 * DAY}, index.findDays(2 * DAY + 200, 5 * DAY));
+        assertArrayEquals(new long[] {}, index.findDays(6 * DAY, 7 * DAY));
+        assertArrayEquals(new long[] {}, index.findDays(0, 499));
+
+        assertArrayEquals(new long[] {0}, index.findDaysById(5));
+        assertArrayEquals(new long[] {2 * DAY, 5 * DAY}, index.findDaysById(18));
+        assertArrayEquals(new long[] {}, index.findDaysById(31));
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        ArchiveIndex index = ArchiveIndex.EMPTY
+                .withDay(0, 10, 500, 1000, 1, 10)
+                .withDay(DAY, 10, DAY, DAY + 1000, 11, 20)
+                .withDay(0, 20, 100, 1000, 1, 30)
+                .withArchivedUntil(2 * DAY)
+                .withArchivedUntil(DAY);
+
+        assertEquals(2 * DAY, index.getArchivedUntil());
+        assertArrayEquals(new long[] {0}, index.findDays(100, 100));
+
+        ArchiveIndex restored = ArchiveIndex.read(ByteBuffer.wrap(index.toByteArray()));
+        assertEquals(index.getArchivedUntil(), restored.getArchivedUntil());
+        assertArrayEquals(index.getDays(), restored.getDays());
+        assertArrayEquals(index.findDays(0, DAY), restored.findDays(0, DAY));
+        assertArrayEquals(new long[] {0, DAY}, restored.findDaysById(15));
+
+        ArchiveIndex trimmed = restored.withoutDaysBefore(DAY);
+        assertFalse(trimmed.contains(0));
+        assertTrue(trimmed.contains(DAY));
+    }
+
+}
@@ -0,0 +1,108 @@
+package org.traccar.storage.archive;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.traccar.model.Position;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class PositionArchiveTest {
+
+    private static final long DAY = 86400000L;
+    private static final long START = 1640995200000L;
+
+    private Path root;
+
+    @Before
+    public void createRoot() throws IOException {
+        root = Files.createTempDirectory("archive");
+    }
+
+    @After
+    public void deleteRoot() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private Position createPosition(long id, long time) {
+        Position position = new Position("test");
+        position.setId(id);
+        position.setDeviceId(1);
+        position.setFixTime(new Date(time));
+        position.setDeviceTime(new Date(time));
+        position.setServerTime(new Date(time));
+        position.setLatitude(10);
+        position.setLongitude(20);
+        return position;
+    }
+
+    private List<Long> getIds(PositionArchive archive, long from, long to) throws Exception {
+        List<Long> result = new ArrayList<>();
+        archive.streamPositions(1, new Date(from), new Date(to), position -> result.add(position.getId()));
+        return result;
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        PositionArchive archive = new PositionArchive(root, new ObjectMapper());
+
+        archive.storePositions(1, List.of(
+                createPosition(1, START + 1000),
+                createPosition(3, START + 3000),
+                createPosition(4, START + DAY + 1000)));
+        archive.storePositions(1, List.of(
+                createPosition(2, START + 2000),
+                createPosition(3, START + 3000)));
+        archive.updateArchivedUntil(1, new Date(START + 2 * DAY));
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), getIds(archive, START, START + 2 * DAY));
+        assertEquals(List.of(2L, 3L), getIds(archive, START + 2000, START + 3000));
+        assertEquals(List.of(4L), getIds(archive, START + DAY, START + 2 * DAY));
+
+        assertNotNull(archive.getPosition(1, 2, new Date(START + 2000)));
+        assertNull(archive.getPosition(1, 2, new Date(START + DAY)));
+        assertEquals(4, archive.getPosition(4).getId());
+        assertNull(archive.getPosition(5));
+
+        PositionArchive reopened = new PositionArchive(root, new ObjectMapper());
+        assertEquals(new Date(START + 2 * DAY), reopened.getArchivedUntil(1));
+        assertEquals(List.of(1L, 2L, 3L, 4L), getIds(reopened, START, START + 2 * DAY));
+        assertNull(reopened.getArchivedUntil(2));
+        assertEquals(START + 3000, reopened.getPosition(3).getFixTime().getTime());
+    }
+
+    @Test
+    public void testRemoveExpired() throws Exception {
+        PositionArchive archive = new PositionArchive(root, new ObjectMapper());
+
+        archive.storePositions(1, List.of(
+                createPosition(1, START + 1000),
+                createPosition(2, START + DAY + 1000),
+                createPosition(3, START + 2 * DAY + 1000)));
+
+        archive.removeExpired(new Date(START + DAY + 2000));
+
+        assertEquals(List.of(2L, 3L), getIds(archive, START, START + 3 * DAY));
+        assertNull(archive.getPosition(1, 1, new Date(START + 1000)));
+        assertNull(archive.getPosition(1));
+        assertEquals(List.of(2L, 3L), getIds(new PositionArchive(root, new ObjectMapper()), START, START + 3 * DAY));
+    }
+
+}